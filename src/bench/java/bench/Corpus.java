@@ -0,0 +1,88 @@
+package bench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Sources the benchmarks render: Test1 as shipped, and generated classes of a given line count.
+ */
+public final class Corpus {
+    private Corpus() {
+    }
+
+    public static String get(String name) {
+        switch (name) {
+            case "small":
+                return resource("/corpus/Test1.java");
+            case "medium":
+                return generate(2000);
+            case "large":
+                return generate(50000);
+            default:
+                throw new IllegalArgumentException("unknown corpus " + name);
+        }
+    }
+
+    private static String resource(String path) {
+        try (InputStream in = Corpus.class.getResourceAsStream(path)) {
+            if (in == null) {
+                throw new IllegalStateException(path + " is not on the classpath");
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            for (int n = in.read(buffer); n > 0; n = in.read(buffer)) {
+                out.write(buffer, 0, n);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Generates a class of roughly {@code lines} lines, mixing the constructs AstVisitor and DomPrinter handle.
+     */
+    public static String generate(int lines) {
+        StringBuilder source = new StringBuilder();
+        source.append("package bench.generated;\n\n")
+                .append("import java.util.ArrayList;\n")
+                .append("import java.util.List;\n")
+                .append("import java.util.Map;\n\n")
+                .append("/**\n * Generated benchmark source.\n */\n")
+                .append("public class Generated extends Object implements Runnable {\n")
+                .append("    private static final String NAME = \"generated\";\n")
+                .append("    private Map<String, List<Integer>> index;\n\n");
+
+        int count = 11;
+        for (int i = 0; count < lines - 1; i++) {
+            source.append("    /**\n     * Method ").append(i).append(".\n     */\n")
+                    .append("    @Deprecated\n")
+                    .append("    public int method").append(i).append("(int a, List<Integer> values) throws Exception {\n")
+                    .append("        // accumulate\n")
+                    .append("        int total = a;\n")
+                    .append("        for (Integer value : values) {\n")
+                    .append("            if (value != null && value > ").append(i).append(") {\n")
+                    .append("                total += value * 2;\n")
+                    .append("            } else {\n")
+                    .append("                total--;\n")
+                    .append("            }\n")
+                    .append("        }\n")
+                    .append("        List<String> names = new ArrayList<>();\n")
+                    .append("        names.add(NAME + total);\n")
+                    .append("        try {\n")
+                    .append("            this.run();\n")
+                    .append("        } catch (RuntimeException e) {\n")
+                    .append("            throw new IllegalStateException(\"method").append(i).append("\", e);\n")
+                    .append("        }\n")
+                    .append("        return total > 0 ? total : -1;\n")
+                    .append("    }\n\n");
+            count += 23;
+        }
+
+        source.append("    public void run() {\n    }\n}\n");
+        return source.toString();
+    }
+}
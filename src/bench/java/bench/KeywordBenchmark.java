@@ -0,0 +1,55 @@
+package bench;
+
+import Dom.Keyword;
+import Dom.KeywordMarkup;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import theme.KeywordEnum;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one keyword's markup: building a {@link Keyword} per token, as the renderer used to,
+ * against the shared fragments of {@link KeywordMarkup}. Run through {@link BenchmarkMain} to see
+ * the bytes each takes per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KeywordBenchmark {
+    private final KeywordEnum[] keywords = KeywordEnum.values();
+    private KeywordMarkup markup;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        this.markup = KeywordMarkup.forDom("span");
+    }
+
+    private KeywordEnum nextKeyword() {
+        KeywordEnum keyword = this.keywords[this.next];
+        this.next = (this.next + 1) % this.keywords.length;
+        return keyword;
+    }
+
+    @Benchmark
+    public String legacy() {
+        return new Keyword(nextKeyword()).asString();
+    }
+
+    @Benchmark
+    public String cached() {
+        return this.markup.get(nextKeyword());
+    }
+}
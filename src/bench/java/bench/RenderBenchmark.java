@@ -0,0 +1,57 @@
+package bench;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the rendering pipeline: parsing alone, visiting a parsed tree, and both.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RenderBenchmark {
+    @Param({"small", "medium", "large"})
+    public String corpus;
+
+    private String source;
+    private CompilationUnit cu;
+    private Renderer renderer;
+
+    @Setup
+    public void setUp() {
+        this.source = Corpus.get(this.corpus);
+        this.cu = JavaParser.parse(this.source);
+        this.renderer = new Renderer();
+    }
+
+    @Benchmark
+    public CompilationUnit parse() {
+        return JavaParser.parse(this.source);
+    }
+
+    @Benchmark
+    public String visit() {
+        return this.renderer.render(this.cu);
+    }
+
+    @Benchmark
+    public String endToEnd() {
+        return this.renderer.render(JavaParser.parse(this.source));
+    }
+}
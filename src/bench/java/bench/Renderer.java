@@ -0,0 +1,39 @@
+package bench;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.printer.PrettyPrintVisitor;
+import com.github.javaparser.printer.PrettyPrinterConfiguration;
+
+import java.lang.reflect.Constructor;
+
+/**
+ * Bridge to the renderer classes, which live in the default package.
+ *
+ * JMH does not accept benchmarks in the default package, and classes in a named package cannot
+ * import from it, so AstVisitor and AstConfiguration are looked up once by name.
+ */
+final class Renderer {
+    private final Constructor<?> visitor;
+    private final PrettyPrinterConfiguration configuration;
+
+    Renderer() {
+        try {
+            Class<?> configurationClass = Class.forName("AstConfiguration");
+            this.configuration = (PrettyPrinterConfiguration) configurationClass.newInstance();
+            this.visitor = Class.forName("AstVisitor").getConstructor(configurationClass);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("renderer classes are not on the classpath", e);
+        }
+    }
+
+    String render(CompilationUnit cu) {
+        PrettyPrintVisitor visitor;
+        try {
+            visitor = (PrettyPrintVisitor) this.visitor.newInstance(this.configuration);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+        cu.accept(visitor, null);
+        return visitor.getSource();
+    }
+}
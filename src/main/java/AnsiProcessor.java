@@ -0,0 +1,100 @@
+import Dom.ElementType;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import theme.DecoratorType;
+import theme.KeywordEnum;
+
+import java.util.Arrays;
+
+/**
+ * Processor that colours source with ANSI escape sequences, for terminals and CI logs.
+ *
+ * Every escape and keyword is a constant char array built once, so printing allocates nothing.
+ * They are chars rather than encoded bytes because they share the {@link SourcePrinter}, and its buffer
+ * and chunking, with the source text around them; being ASCII, each encodes to a single byte on the way out.
+ * Elements can nest (a class reference inside an annotation), so closing one restores the colour
+ * of the element around it instead of always resetting.
+ */
+public class AnsiProcessor extends Processor {
+    private static final char[] RESET = "\u001b[0m".toCharArray();
+    private static final char[][] COLORS = new char[DecoratorType.values().length][];
+    private static final char[][] KEYWORDS = new char[KeywordEnum.values().length][];
+
+    static {
+        color(DecoratorType.ANNOTATION, "33");
+        color(DecoratorType.CLASS_FIELD, "35");
+        color(DecoratorType.CLASS, "36");
+        color(DecoratorType.KEYWORD, "1;34");
+        color(DecoratorType.METHOD, "1;33");
+        color(DecoratorType.NUMBER, "32");
+        color(DecoratorType.Parameter, "37");
+        color(DecoratorType.String, "32");
+        color(DecoratorType.Variable, "37");
+
+        for (KeywordEnum keyword : KeywordEnum.values()) {
+            KEYWORDS[keyword.ordinal()] = keyword.getCodeRepresentation().toCharArray();
+        }
+    }
+
+    private static void color(DecoratorType decorator, String sgr) {
+        COLORS[decorator.ordinal()] = ("\u001b[" + sgr + "m").toCharArray();
+    }
+
+    private int[] open = new int[8];
+    private int depth = 0;
+
+    public AnsiProcessor(AstVisitor visitor) {
+        super(visitor);
+    }
+
+    public AnsiProcessor(AstVisitor visitor, SourcePrinter printer) {
+        super(visitor, printer);
+    }
+
+    /**
+     * Renders the compilation unit with ANSI colours into {@code out}.
+     */
+    public static void render(CompilationUnit cu, AstConfiguration configuration, Appendable out) {
+        AstVisitor visitor = new AstVisitor(configuration, out, AnsiProcessor::new);
+        cu.accept(visitor, null);
+        visitor.flush();
+    }
+
+    @Override
+    public void printKeyword(KeywordEnum keyword) {
+        printer.print(COLORS[DecoratorType.KEYWORD.ordinal()]);
+        printer.print(KEYWORDS[keyword.ordinal()]);
+        restore();
+    }
+
+    @Override
+    protected void open(ElementType type, Node node) {
+        if (depth == open.length) {
+            open = Arrays.copyOf(open, depth * 2);
+        }
+        int decorator = type.getDecorator().ordinal();
+        open[depth++] = decorator;
+        printer.print(COLORS[decorator]);
+    }
+
+    @Override
+    protected void close(ElementType type, Node node) {
+        --depth;
+        restore();
+    }
+
+    @Override
+    public void reset() {
+        depth = 0;
+    }
+
+    /**
+     * Goes back to the colour of the innermost open element, or to the terminal default.
+     */
+    private void restore() {
+        printer.print(RESET);
+        if (depth > 0) {
+            printer.print(COLORS[open[depth - 1]]);
+        }
+    }
+}
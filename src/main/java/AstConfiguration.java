@@ -1,12 +1,209 @@
 import com.github.javaparser.printer.PrettyPrinterConfiguration;
+import theme.Theme;
+import theme.ThemeOutput;
+
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Created by bresai on 2016/12/20.
  */
 public class AstConfiguration extends PrettyPrinterConfiguration{
     private final String dom = "span";
+    private int bufferSize = 8192;
+    private IndentStyle indentStyle = IndentStyle.LITERAL;
+    private RenderStats renderStats;
+    private final AtomicReference<Theme> theme = new AtomicReference<>();
+    private ThemeOutput themeOutput = ThemeOutput.INLINE;
+    private boolean lexerFallback = false;
+    private int lexerThreshold = Integer.MAX_VALUE;
+    private boolean symbolIndex = false;
+    private TypeIndex typeIndex;
+    private String linkBase = "";
+    private boolean precompress = false;
 
     public String getDom() {
         return dom;
     }
+
+    /**
+     * Number of chars a streaming {@link SourcePrinter} holds before writing them to its sink.
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public AstConfiguration setBufferSize(int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize must be positive: " + bufferSize);
+        }
+        this.bufferSize = bufferSize;
+        return this;
+    }
+
+    public IndentStyle getIndentStyle() {
+        return indentStyle;
+    }
+
+    public AstConfiguration setIndentStyle(IndentStyle indentStyle) {
+        if (indentStyle == null) {
+            throw new IllegalArgumentException("indentStyle must not be null");
+        }
+        this.indentStyle = indentStyle;
+        return this;
+    }
+
+    /**
+     * The theme renders started from now on use, or null for the plain markup.
+     */
+    public Theme getTheme() {
+        return theme.get();
+    }
+
+    /**
+     * Switches the theme. Renders already running keep the theme they started with.
+     */
+    public AstConfiguration setTheme(Theme theme) {
+        this.theme.set(theme);
+        return this;
+    }
+
+    public ThemeOutput getThemeOutput() {
+        return themeOutput;
+    }
+
+    public AstConfiguration setThemeOutput(ThemeOutput themeOutput) {
+        if (themeOutput == null) {
+            throw new IllegalArgumentException("themeOutput must not be null");
+        }
+        this.themeOutput = themeOutput;
+        return this;
+    }
+
+    /**
+     * Whether sources that do not parse are rendered by the {@link LexicalHighlighter} instead of failing.
+     */
+    public boolean isLexerFallback() {
+        return lexerFallback;
+    }
+
+    public AstConfiguration setLexerFallback(boolean lexerFallback) {
+        this.lexerFallback = lexerFallback;
+        return this;
+    }
+
+    /**
+     * Sources longer than this many chars skip parsing and go straight to the {@link LexicalHighlighter}.
+     */
+    public int getLexerThreshold() {
+        return lexerThreshold;
+    }
+
+    public AstConfiguration setLexerThreshold(int lexerThreshold) {
+        if (lexerThreshold < 0) {
+            throw new IllegalArgumentException("lexerThreshold must not be negative: " + lexerThreshold);
+        }
+        this.lexerThreshold = lexerThreshold;
+        return this;
+    }
+
+    /**
+     * Whether visitors also record a {@link SymbolIndex} of what they render. It does not change the markup.
+     */
+    public boolean isSymbolIndex() {
+        return symbolIndex;
+    }
+
+    public AstConfiguration setSymbolIndex(boolean symbolIndex) {
+        this.symbolIndex = symbolIndex;
+        return this;
+    }
+
+    /**
+     * Index html renders link type references to, or null to leave them unlinked.
+     */
+    public TypeIndex getTypeIndex() {
+        return typeIndex;
+    }
+
+    public AstConfiguration setTypeIndex(TypeIndex typeIndex) {
+        this.typeIndex = typeIndex;
+        return this;
+    }
+
+    /**
+     * Prefix of every type link, e.g. "/" when the rendered tree is served from the root of a site.
+     */
+    public String getLinkBase() {
+        return linkBase;
+    }
+
+    public AstConfiguration setLinkBase(String linkBase) {
+        if (linkBase == null) {
+            throw new IllegalArgumentException("linkBase must not be null");
+        }
+        this.linkBase = linkBase;
+        return this;
+    }
+
+    /**
+     * Whether renders are also kept gzip-compressed, through a {@link CompressedOutput}, so they can be
+     * served without compressing them per request. It does not change the markup.
+     */
+    public boolean isPrecompress() {
+        return precompress;
+    }
+
+    public AstConfiguration setPrecompress(boolean precompress) {
+        this.precompress = precompress;
+        return this;
+    }
+
+    /**
+     * Stats that visitors created by {@link AstVisitor#create} record into, or null to render uninstrumented.
+     */
+    public RenderStats getRenderStats() {
+        return renderStats;
+    }
+
+    public AstConfiguration setRenderStats(RenderStats renderStats) {
+        this.renderStats = renderStats;
+        return this;
+    }
+
+    /**
+     * A copy of this configuration whose theme no longer follows {@link #setTheme}, so a render and the
+     * cache key describing it are sure to see the same settings.
+     */
+    public AstConfiguration snapshot() {
+        AstConfiguration copy = new AstConfiguration();
+        copy.setIndent(getIndent());
+        copy.setPrintComments(isPrintComments());
+        copy.bufferSize = bufferSize;
+        copy.indentStyle = indentStyle;
+        copy.renderStats = renderStats;
+        copy.theme.set(getTheme());
+        copy.themeOutput = themeOutput;
+        copy.lexerFallback = lexerFallback;
+        copy.lexerThreshold = lexerThreshold;
+        copy.symbolIndex = symbolIndex;
+        copy.typeIndex = typeIndex;
+        copy.linkBase = linkBase;
+        copy.precompress = precompress;
+        return copy;
+    }
+
+    /**
+     * Describes every setting that changes the rendered markup, for use in cache keys.
+     */
+    public String getCacheKey() {
+        return "dom=" + getDom() + ";indent=" + getIndent() + ";comments=" + isPrintComments()
+                + ";indentStyle=" + getIndentStyle() + ";theme=" + themeKey()
+                + ";lexer=" + isLexerFallback() + ":" + getLexerThreshold()
+                + ";types=" + (getTypeIndex() == null ? "none" : getTypeIndex().getStamp() + ":" + getLinkBase());
+    }
+
+    private String themeKey() {
+        Theme theme = getTheme();
+        return theme == null ? "none" : getThemeOutput() + ":" + theme.getCacheKey();
+    }
 }
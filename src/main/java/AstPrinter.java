@@ -1,11 +1,21 @@
-import com.github.javaparser.JavaParser;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.Node;
 import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
 import com.github.javaparser.printer.PrettyPrintVisitor;
+import theme.Theme;
+import theme.ThemeOutput;
 
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
+import javax.management.JMException;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 /**
  * Created by bresai on 2016/12/15.
@@ -18,17 +28,234 @@ public class AstPrinter extends VoidVisitorAdapter {
         return visitor.getSource();
     }
 
-    public static void main(String[] args) throws FileNotFoundException {
+    /**
+     * Renders the compilation unit straight into {@code out}, holding at most
+     * {@link AstConfiguration#getBufferSize()} chars of output at a time.
+     */
+    public static void print(CompilationUnit cu, AstConfiguration configuration, Appendable out) {
+        AstVisitor visitor = AstVisitor.create(configuration, out);
+        cu.accept(visitor, null);
+        visitor.flush();
+    }
+
+    /**
+     * Renders the compilation unit, or highlights {@code source} lexically when there is none.
+     */
+    private static void print(CompilationUnit cu, CharSequence source, AstConfiguration configuration, Appendable out) {
+        if (cu == null) {
+            new LexicalHighlighter(configuration).highlight(source, out);
+            return;
+        }
+
+        AstVisitor visitor = AstVisitor.create(configuration, out);
+        String lines = System.getProperty("astcode.lines");
+        if (lines != null) {
+            int[] range = lineRange(lines);
+            visitor.setLineRange(range[0], range[1]);
+        }
+        cu.accept(visitor, null);
+        visitor.flush();
+    }
+
+    /**
+     * Parses a line range written as first-last, e.g. 120-200.
+     */
+    static int[] lineRange(String spec) {
+        int dash = spec.indexOf('-');
+        if (dash == -1) {
+            throw new IllegalArgumentException("line range must be first-last: " + spec);
+        }
+        return new int[]{Integer.parseInt(spec.substring(0, dash).trim()), Integer.parseInt(spec.substring(dash + 1).trim())};
+    }
+
+    /**
+     * Usage: AstPrinter [source file] [output file]
+     *        AstPrinter source-dir output-dir [threads]
+     *        AstPrinter --serve [port] [workers] [queue]
+     *        AstPrinter --ansi source-file
+     *        AstPrinter --index source-dir index-file [threads]
+     *        AstPrinter --diff old-file new-file
+     *        AstPrinter --train
+     *
+     * -Dastcode.theme=file|name renders with a theme file or one bundled under /themes,
+     * -Dastcode.themeOutput=inline|class chooses between style attributes and classes.
+     * Files that do not parse are highlighted lexically; -Dastcode.lexerThreshold=chars does the same
+     * for every file longer than that. -Dastcode.typeIndex=index-file links type references to their
+     * declarations, prefixed with -Dastcode.linkBase. -Dastcode.precompress=true writes a .gz copy next to
+     * every output file, single or batch, and has the server answer gzip-accepting clients with compressed
+     * output; output printed to stdout is never compressed.
+     * -Dastcode.lines=first-last renders only what a single parsed file has on those lines.
+     * -Dastcode.warmup=iterations renders the bundled corpus that many times before the server starts;
+     * --train goes through every renderer once, for a run that dumps a class data sharing archive.
+     * -Dastcode.cache=bytes keeps that much rendered html in memory for the server and directory renders,
+     * and -Dastcode.cacheDir=dir keeps it on disk as well, so unchanged sources are not rendered twice.
+     * -Dastcode.stats=object-name times every render and publishes the totals over JMX under that name,
+     * e.g. astcode:type=RenderStats; a directory run also prints the hot spots once it is done.
+     */
+    public static void main(String[] args) throws IOException {
+        AstConfiguration configuration = configuration();
+
+        if (args.length > 0 && "--serve".equals(args[0])) {
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+            int workers = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+            int queue = args.length > 3 ? Integer.parseInt(args[3]) : 64;
+            int warmup = Integer.getInteger("astcode.warmup", 0);
+            if (warmup > 0) {
+                long nanos = Warmup.run(configuration, warmup);
+                System.out.println("warmed up with " + warmup + " renders in " + nanos / 1000000 + " ms");
+                if (configuration.getRenderStats() != null) {
+                    configuration.getRenderStats().reset();
+                }
+            }
+            HighlightServer server = new HighlightServer(configuration, port, workers, queue)
+                    .setCache(cache(configuration))
+                    .start();
+            System.out.println("listening on http://localhost:" + server.getPort() + "/highlight");
+            return;
+        }
+
+        if (args.length > 2 && "--index".equals(args[0])) {
+            int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+            TypeIndex index = TypeIndex.build(Paths.get(args[1]), Paths.get(args[2]), threads);
+            System.out.println(index.size() + " types indexed into " + args[2]);
+            return;
+        }
+
+        if (args.length > 0 && "--train".equals(args[0])) {
+            Warmup.train(configuration);
+            System.out.println("trained on the bundled corpus");
+            return;
+        }
+
+        if (args.length > 2 && "--diff".equals(args[0])) {
+            String html = new DiffRenderer(configuration).render(
+                    new String(Files.readAllBytes(Paths.get(args[1])), StandardCharsets.UTF_8),
+                    new String(Files.readAllBytes(Paths.get(args[2])), StandardCharsets.UTF_8));
+            Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+            out.write(html);
+            out.write(System.lineSeparator());
+            out.flush();
+            return;
+        }
+
+        if (args.length > 1 && "--ansi".equals(args[0])) {
+            CompilationUnit cu = new MappedSourceReader().read(Paths.get(args[1])).parse();
+            Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+            AnsiProcessor.render(cu, configuration, out);
+            out.write(System.lineSeparator());
+            out.flush();
+            return;
+        }
 
-        FileInputStream inputStream = new FileInputStream("src/main/java/source/Test1.java");
+        String source = args.length > 0 ? args[0] : "src/main/java/source/Test1.java";
 
-        CompilationUnit cu = JavaParser.parse(inputStream);
+        if (Files.isDirectory(Paths.get(source))) {
+            if (args.length < 2) {
+                throw new IllegalArgumentException("an output directory is required when rendering " + source);
+            }
+            int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+            try (BatchRenderer renderer = new BatchRenderer(configuration, threads)) {
+                renderer.setCache(cache(configuration));
+                System.out.println(renderer.render(Paths.get(source), Paths.get(args[1])));
+            }
+            if (configuration.getRenderStats() != null) {
+                for (String hotSpot : configuration.getRenderStats().getHotSpots()) {
+                    System.out.println(hotSpot);
+                }
+            }
+            return;
+        }
+
+        MappedSourceReader.MappedSource mapped = new MappedSourceReader().read(Paths.get(source));
+        CompilationUnit cu = LexicalHighlighter.parse(mapped.getChars(), mapped::parse, configuration);
+
+        if (args.length > 1 && configuration.isPrecompress()) {
+            CompressedOutput out = new CompressedOutput();
+            print(cu, mapped.getChars(), configuration, out);
+            out.close();
+            Path target = Paths.get(args[1]);
+            try (OutputStream plain = Files.newOutputStream(target)) {
+                CompressedOutput.writeTo(out.getPlain(), plain);
+            }
+            try (OutputStream gzip = Files.newOutputStream(target.resolveSibling(target.getFileName() + ".gz"))) {
+                CompressedOutput.writeTo(out.getGzip(), gzip);
+            }
+            return;
+        }
+
+        if (args.length > 1) {
+            try (Writer out = Files.newBufferedWriter(Paths.get(args[1]), StandardCharsets.UTF_8)) {
+                print(cu, mapped.getChars(), configuration, out);
+            }
+            return;
+        }
 
-        AstVisitor visitor = new AstVisitor(new AstConfiguration());
-        cu.accept(visitor,  null);
         // prints the resulting compilation unit to default system output
-        System.out.println(visitor.getSource());
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        print(cu, mapped.getChars(), configuration, out);
+        out.write(System.lineSeparator());
+        out.flush();
+    }
+
+    /**
+     * The cache -Dastcode.cache and -Dastcode.cacheDir ask for, or null when neither is set.
+     */
+    private static RenderCache cache(AstConfiguration configuration) {
+        String size = System.getProperty("astcode.cache");
+        String directory = System.getProperty("astcode.cacheDir");
+        if (size == null && directory == null) {
+            return null;
+        }
+        long maxBytes = size == null ? 64L << 20 : Long.parseLong(size);
+        return new RenderCache(configuration, maxBytes, directory == null ? null : Paths.get(directory));
     }
-}
 
+    private static AstConfiguration configuration() throws IOException {
+        AstConfiguration configuration = new AstConfiguration().setLexerFallback(true);
+        String threshold = System.getProperty("astcode.lexerThreshold");
+        if (threshold != null) {
+            configuration.setLexerThreshold(Integer.parseInt(threshold));
+        }
 
+        configuration.setPrecompress(Boolean.getBoolean("astcode.precompress"));
+
+        String typeIndex = System.getProperty("astcode.typeIndex");
+        if (typeIndex != null) {
+            configuration.setTypeIndex(TypeIndex.open(Paths.get(typeIndex)))
+                    .setLinkBase(System.getProperty("astcode.linkBase", ""));
+        }
+
+        String stats = System.getProperty("astcode.stats");
+        if (stats != null) {
+            RenderStats renderStats = new RenderStats();
+            try {
+                renderStats.register(stats);
+            } catch (JMException e) {
+                throw new IllegalArgumentException("cannot publish render stats as " + stats, e);
+            }
+            configuration.setRenderStats(renderStats);
+        }
+
+        String theme = System.getProperty("astcode.theme");
+        if (theme == null) {
+            return configuration;
+        }
+
+        Path file = Paths.get(theme);
+        if (Files.isRegularFile(file)) {
+            configuration.setTheme(Theme.load(file));
+        } else {
+            try (InputStream in = AstPrinter.class.getResourceAsStream("/themes/" + theme + ".properties")) {
+                if (in == null) {
+                    throw new IOException("no theme file or bundled theme named " + theme);
+                }
+                configuration.setTheme(Theme.load(theme, in));
+            }
+        }
+        String output = System.getProperty("astcode.themeOutput");
+        if (output != null) {
+            configuration.setThemeOutput(ThemeOutput.valueOf(output.toUpperCase()));
+        }
+        return configuration;
+    }
+}
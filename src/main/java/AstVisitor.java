@@ -1,4 +1,3 @@
-import Dom.Keyword;
 import com.github.javaparser.ast.*;
 import com.github.javaparser.ast.body.*;
 import com.github.javaparser.ast.comments.BlockComment;
@@ -11,55 +10,253 @@ import com.github.javaparser.ast.nodeTypes.NodeWithTypeArguments;
 import com.github.javaparser.ast.stmt.*;
 import com.github.javaparser.ast.type.*;
 import com.github.javaparser.printer.PrettyPrintVisitor;
-import com.github.javaparser.utils.PositionUtils;
 import com.github.javaparser.utils.Utils;
+import theme.KeywordEnum;
 
 import java.util.Collection;
+import java.util.EnumMap;
 import java.util.EnumSet;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 /**
  * Created by bresai on 2016/12/19.
  */
 public class AstVisitor extends PrettyPrintVisitor {
+    /**
+     * Version of the rendered markup. Bump it whenever the output changes, so cached renders are dropped.
+     */
+    public static final int RENDERER_VERSION = 1;
+
+    private static final Map<Modifier, KeywordEnum> MODIFIER_KEYWORDS = new EnumMap<>(Modifier.class);
+
+    static {
+        for (Modifier modifier : Modifier.values()) {
+            MODIFIER_KEYWORDS.put(modifier, KeywordEnum.valueOf(modifier.name()));
+        }
+    }
+
     private final AstConfiguration configuration;
     private final SourcePrinter printer;
-    private final DomPrinter domPrinter;
+    private final Processor domPrinter;
+    private final SymbolIndexProcessor symbols;
+    private final Processor processor;
+    private MemberListener memberListener;
+    private Predicate<BodyDeclaration<?>> memberFilter;
+    private OrphanCommentIndex commentIndex;
+    private int memberDepth = 0;
+    private int firstLine = 1;
+    private int lastLine = Integer.MAX_VALUE;
 
     public AstVisitor(AstConfiguration configuration) {
+        this(configuration, null);
+    }
+
+    /**
+     * Creates a visitor that streams its output to {@code out} instead of keeping it in memory.
+     * Call {@link #flush()} once the node has been visited; {@link #getSource()} is not available.
+     */
+    public AstVisitor(AstConfiguration configuration, Appendable out) {
+        this(configuration, out, visitor -> new DomPrinter(configuration.getDom(), visitor));
+    }
+
+    protected AstVisitor(AstConfiguration configuration, Appendable out, Function<AstVisitor, Processor> domPrinter) {
+        this(configuration, new SourcePrinter(configuration.getIndent(), configuration.getIndentStyle(),
+                configuration.getDom(), out, configuration.getBufferSize()), domPrinter);
+    }
+
+    protected AstVisitor(AstConfiguration configuration, SourcePrinter printer, Function<AstVisitor, Processor> domPrinter) {
         super(configuration);
         this.configuration = configuration;
-        this.printer = new SourcePrinter(this.configuration.getIndent());
-        this.domPrinter = new DomPrinter(this.configuration.getDom(), this);
+        this.printer = printer;
+        this.processor = domPrinter.apply(this);
+        Processor outer = linkTypes(this, this.processor);
+        this.symbols = configuration.isSymbolIndex() ? new SymbolIndexProcessor(this, outer) : null;
+        this.domPrinter = decorate(this.symbols != null ? this.symbols : outer);
+    }
+
+    /**
+     * Wraps the outermost processor, the one the visitor calls. Runs during construction, so an override
+     * must not depend on its own fields being set.
+     */
+    protected Processor decorate(Processor processor) {
+        return processor;
+    }
+
+    /**
+     * Wraps an html processor in a {@link TypeLinkProcessor} when the visitor's configuration has a type index.
+     * Other processors are returned as they are.
+     */
+    static Processor linkTypes(AstVisitor visitor, Processor processor) {
+        AstConfiguration configuration = visitor.getConfiguration();
+        if (configuration.getTypeIndex() == null || !(processor instanceof DomPrinter)) {
+            return processor;
+        }
+        return new TypeLinkProcessor(visitor, processor, configuration.getTypeIndex(), configuration.getLinkBase());
+    }
+
+    /**
+     * Creates the visitor for {@code configuration}: an {@link InstrumentedAstVisitor} when render stats
+     * are configured, a plain one otherwise.
+     *
+     * @param out sink to stream to, or null to keep the output in memory
+     */
+    public static AstVisitor create(AstConfiguration configuration, Appendable out) {
+        if (configuration.getRenderStats() != null) {
+            return new InstrumentedAstVisitor(configuration, out, configuration.getRenderStats());
+        }
+        return new AstVisitor(configuration, out);
+    }
+
+    public AstConfiguration getConfiguration() {
+        return configuration;
     }
 
     public SourcePrinter getPrinter() {
         return printer;
     }
 
+    public Processor getProcessor() {
+        return processor;
+    }
+
+    /**
+     * The symbols of the last render, or null unless the configuration asks for a symbol index.
+     */
+    public SymbolIndex getSymbolIndex() {
+        return this.symbols != null ? this.symbols.getIndex() : null;
+    }
+
     public String getSource() {
         return this.printer.getSource();
     }
 
+    public void flush() {
+        this.printer.flush();
+    }
+
+    /**
+     * Makes the visitor ready to render another node into memory, keeping its buffer capacity.
+     */
+    public void reset() {
+        this.reset(null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Makes the visitor ready to render another node into {@code out}, keeping its buffer capacity.
+     */
+    public void reset(Appendable out) {
+        this.reset(out, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Makes the visitor ready to render another node.
+     *
+     * @param out sink to stream to, or null to keep the output in memory
+     * @param retainedCapacity largest output buffer to keep; a bigger one is dropped for one of this size
+     */
+    public void reset(Appendable out, int retainedCapacity) {
+        this.printer.reset(out, retainedCapacity);
+        this.domPrinter.reset();
+        this.commentIndex = null;
+        this.memberDepth = 0;
+    }
+
+    public void setMemberListener(MemberListener memberListener) {
+        this.memberListener = memberListener;
+    }
+
+    /**
+     * Renders only the members {@code memberFilter} accepts, or every member when it is null. A rejected
+     * member keeps its place: the lines around it are printed and the member listener is told about it with
+     * an empty span, so the output lines up with a full render.
+     */
+    public void setMemberFilter(Predicate<BodyDeclaration<?>> memberFilter) {
+        this.memberFilter = memberFilter;
+    }
+
+    /**
+     * Hands the output to {@code chunkConsumer} piece by piece instead of keeping it: one chunk after each
+     * member of a top-level type and a last one on {@link #flush()}, so a client can show the file as it
+     * is rendered and only the largest member is ever buffered. Each chunk is only valid during the call.
+     * Not available on a streaming visitor; pass null to keep the output in memory again.
+     */
+    public void setChunkConsumer(Consumer<CharSequence> chunkConsumer) {
+        this.printer.setChunkConsumer(chunkConsumer);
+    }
+
+    /**
+     * Renders only what intersects source lines {@code firstLine} to {@code lastLine}, both inclusive: types,
+     * imports, members and statements lying entirely outside them are skipped without being visited, while
+     * the declarations and blocks enclosing the range are printed around what is kept, so tags and braces stay
+     * balanced and indentation is that of the full render. Pass 1 and Integer.MAX_VALUE to render everything.
+     */
+    public void setLineRange(int firstLine, int lastLine) {
+        if (firstLine < 1 || lastLine < firstLine) {
+            throw new IllegalArgumentException("invalid line range " + firstLine + "-" + lastLine);
+        }
+        this.firstLine = firstLine;
+        this.lastLine = lastLine;
+    }
+
+    /**
+     * Whether {@code node} or its comment has a line in the requested range. Nodes without a range are kept.
+     */
+    private boolean inRange(Node node) {
+        if (this.firstLine == 1 && this.lastLine == Integer.MAX_VALUE || !node.getRange().isPresent()) {
+            return true;
+        }
+        int begin = node.getBegin().get().line;
+        Comment comment = node.getComment();
+        if (comment != null && comment.getBegin().isPresent()) {
+            begin = Math.min(begin, comment.getBegin().get().line);
+        }
+        return begin <= this.lastLine && node.getEnd().get().line >= this.firstLine;
+    }
+
+    private SourcePrinter keyword(KeywordEnum keyword) {
+        this.domPrinter.printKeyword(keyword);
+        return this.printer;
+    }
+
     private void printModifiers(EnumSet<Modifier> modifiers) {
         if(modifiers.size() > 0) {
             for (Enum modifier : modifiers){
-                this.printer.print(new Keyword(((Modifier) modifier).asString()).asString() + " ");
+                this.keyword(MODIFIER_KEYWORDS.get(modifier)).print(" ");
             }
         }
     }
 
     private void printMembers(NodeList<BodyDeclaration<?>> members, Void arg) {
         Iterator var3 = members.iterator();
+        ++this.memberDepth;
 
         while(var3.hasNext()) {
             BodyDeclaration member = (BodyDeclaration)var3.next();
+            if (!this.inRange(member)) {
+                continue;
+            }
             this.printer.println();
-            member.accept(this, arg);
+            long start = this.printer.position();
+            if (this.memberFilter == null || this.memberFilter.test(member)) {
+                member.accept(this, arg);
+            }
+            if (this.memberListener != null) {
+                this.memberListener.onMember(member, start, this.printer.position());
+            }
             this.printer.println();
+            if (this.memberDepth == 1) {
+                this.printer.endChunk();
+            }
         }
 
+        --this.memberDepth;
+
     }
 
     private void printMemberAnnotations(NodeList<AnnotationExpr> annotations, Void arg) {
@@ -154,24 +351,37 @@ public class AstVisitor extends PrettyPrintVisitor {
     }
 
     public void visit(CompilationUnit n, Void arg) {
+        if (this.commentIndex == null || this.commentIndex.getRoot() != n) {
+            this.commentIndex = OrphanCommentIndex.build(n);
+        }
+        this.domPrinter.compilationUnit(n);
         this.printJavaComment(n.getComment(), arg);
-        if(n.getPackage().isPresent()) {
+        if(n.getPackage().isPresent() && this.inRange(n.getPackage().get())) {
             ((PackageDeclaration)n.getPackage().get()).accept(this, arg);
         }
 
-        n.getImports().accept(this, arg);
-        if(!n.getImports().isEmpty()) {
+        boolean imports = false;
+        for (ImportDeclaration i : n.getImports()) {
+            if (this.inRange(i)) {
+                i.accept(this, arg);
+                imports = true;
+            }
+        }
+        if(imports) {
             this.printer.println();
         }
 
-        Iterator i = n.getTypes().iterator();
-
-        while(i.hasNext()) {
-            ((TypeDeclaration)i.next()).accept(this, arg);
-            this.printer.println();
-            if(i.hasNext()) {
+        boolean first = true;
+        for (TypeDeclaration<?> type : n.getTypes()) {
+            if (!this.inRange(type)) {
+                continue;
+            }
+            if (!first) {
                 this.printer.println();
             }
+            type.accept(this, arg);
+            this.printer.println();
+            first = false;
         }
 
         this.printOrphanCommentsEnding(n);
@@ -180,7 +390,7 @@ public class AstVisitor extends PrettyPrintVisitor {
     public void visit(PackageDeclaration n, Void arg) {
         this.printJavaComment(n.getComment(), arg);
         this.printAnnotations(n.getAnnotations(), false, arg);
-        this.printer.print(new Keyword("package").asString() + " ");
+        this.keyword(KeywordEnum.PACKAGE).print(" ");
         n.getName().accept(this, arg);
         this.printer.println(";");
         this.printer.println();
@@ -213,9 +423,9 @@ public class AstVisitor extends PrettyPrintVisitor {
         this.printMemberAnnotations(n.getAnnotations(), arg);
         this.printModifiers(n.getModifiers());
         if(n.isInterface()) {
-            this.printer.print(new Keyword("interface").asString() + " ");
+            this.keyword(KeywordEnum.INTERFACE).print(" ");
         } else {
-            this.printer.print(new Keyword("class").asString() + " ");
+            this.keyword(KeywordEnum.CLASS).print(" ");
         }
 
         this.domPrinter.printClassDeclaration(n, arg);
@@ -223,7 +433,8 @@ public class AstVisitor extends PrettyPrintVisitor {
         Iterator i;
         ClassOrInterfaceType c;
         if(!n.getExtends().isEmpty()) {
-            this.printer.print(" " + new Keyword("extends").asString() + " ");
+            this.printer.print(" ");
+            this.keyword(KeywordEnum.EXTENDS).print(" ");
             i = n.getExtends().iterator();
 
             while(i.hasNext()) {
@@ -236,7 +447,8 @@ public class AstVisitor extends PrettyPrintVisitor {
         }
 
         if(!n.getImplements().isEmpty()) {
-            this.printer.print(" " + new Keyword("implements").asString() + " ");
+            this.printer.print(" ");
+            this.keyword(KeywordEnum.IMPLEMENTS).print(" ");
             i = n.getImplements().iterator();
 
             while(i.hasNext()) {
@@ -302,7 +514,8 @@ public class AstVisitor extends PrettyPrintVisitor {
 
         n.getName().accept(this, arg);
         if(!Utils.isNullOrEmpty(n.getTypeBound())) {
-            this.printer.print(" " + new Keyword("extends").asString()+ " ");
+            this.printer.print(" ");
+            this.keyword(KeywordEnum.EXTENDS).print(" ");
             i = n.getTypeBound().iterator();
 
             while(i.hasNext()) {
@@ -394,12 +607,14 @@ public class AstVisitor extends PrettyPrintVisitor {
         this.printAnnotations(n.getAnnotations(), false, arg);
         this.printer.print("?");
         if(n.getExtendedTypes().isPresent()) {
-            this.printer.print(" " + new Keyword("extends").asString() + " ");
+            this.printer.print(" ");
+            this.keyword(KeywordEnum.EXTENDS).print(" ");
             ((ReferenceType)n.getExtendedTypes().get()).accept(this, arg);
         }
 
         if(n.getSuperTypes().isPresent()) {
-            this.printer.print(" " + new Keyword("super").asString() + " ");
+            this.printer.print(" ");
+            this.keyword(KeywordEnum.SUPER).print(" ");
             ((ReferenceType)n.getSuperTypes().get()).accept(this, arg);
         }
 
@@ -481,7 +696,8 @@ public class AstVisitor extends PrettyPrintVisitor {
     public void visit(VoidType n, Void arg) {
         this.printJavaComment(n.getComment(), arg);
         this.printAnnotations(n.getAnnotations(), false, arg);
-        this.printer.print(" " + new Keyword("void").asString() + " ");
+        this.printer.print(" ");
+        this.keyword(KeywordEnum.VOID).print(" ");
     }
 
     public void visit(ArrayAccessExpr n, Void arg) {
@@ -494,7 +710,7 @@ public class AstVisitor extends PrettyPrintVisitor {
 
     public void visit(ArrayCreationExpr n, Void arg) {
         this.printJavaComment(n.getComment(), arg);
-        this.printer.print(new Keyword("new").asString() + " ");
+        this.keyword(KeywordEnum.NEW).print(" ");
         n.getElementType().accept(this, arg);
         Iterator var3 = n.getLevels().iterator();
 
@@ -574,7 +790,8 @@ public class AstVisitor extends PrettyPrintVisitor {
     public void visit(InstanceOfExpr n, Void arg) {
         this.printJavaComment(n.getComment(), arg);
         n.getExpression().accept(this, arg);
-        this.printer.print(" " + new Keyword("instanceof").asString() + " ");
+        this.printer.print(" ");
+        this.keyword(KeywordEnum.INSTANCEOF).print(" ");
         n.getType().accept(this, arg);
     }
 
@@ -614,7 +831,7 @@ public class AstVisitor extends PrettyPrintVisitor {
 
     public void visit(NullLiteralExpr n, Void arg) {
         this.printJavaComment(n.getComment(), arg);
-        this.printer.print(new Keyword("null").asString());
+        this.keyword(KeywordEnum.NULL);
     }
 
     public void visit(ThisExpr n, Void arg) {
@@ -624,7 +841,7 @@ public class AstVisitor extends PrettyPrintVisitor {
             this.printer.print(".");
         }
 
-        this.printer.print(new Keyword("this").asString());
+        this.keyword(KeywordEnum.THIS);
     }
 
     public void visit(SuperExpr n, Void arg) {
@@ -634,7 +851,7 @@ public class AstVisitor extends PrettyPrintVisitor {
             this.printer.print(".");
         }
 
-        this.printer.print(new Keyword("super").asString());
+        this.keyword(KeywordEnum.SUPER);
     }
 
     public void visit(MethodCallExpr n, Void arg) {
@@ -656,7 +873,7 @@ public class AstVisitor extends PrettyPrintVisitor {
             this.printer.print(".");
         }
 
-        this.printer.print(new Keyword("new").asString() + " ");
+        this.keyword(KeywordEnum.NEW).print(" ");
         this.printTypeArgs(n, arg);
         if(!Utils.isNullOrEmpty((Collection)n.getTypeArguments().orElse(null))) {
             this.printer.print(" ");
@@ -714,7 +931,8 @@ public class AstVisitor extends PrettyPrintVisitor {
 
         this.printer.print(")");
         if(!Utils.isNullOrEmpty(n.getThrownExceptions())) {
-            this.printer.print(" " + new Keyword("throws").asString() + " ");
+            this.printer.print(" ");
+            this.keyword(KeywordEnum.THROWS).print(" ");
             i = n.getThrownExceptions().iterator();
 
             while(i.hasNext()) {
@@ -736,7 +954,7 @@ public class AstVisitor extends PrettyPrintVisitor {
         this.printMemberAnnotations(n.getAnnotations(), arg);
         this.printModifiers(n.getModifiers());
         if(n.isDefault()) {
-            this.printer.print(new Keyword("default").asString() + " ");
+            this.keyword(KeywordEnum.DEFAULT).print(" ");
         }
 
         this.printTypeParameters(n.getTypeParameters(), arg);
@@ -764,7 +982,8 @@ public class AstVisitor extends PrettyPrintVisitor {
 
         this.printer.print(")");
         if(!Utils.isNullOrEmpty(n.getThrownExceptions())) {
-            this.printer.print(" " + new Keyword("throws").asString() + " ");
+            this.printer.print(" ");
+            this.keyword(KeywordEnum.THROWS).print(" ");
             i = n.getThrownExceptions().iterator();
 
             while(i.hasNext()) {
@@ -805,7 +1024,7 @@ public class AstVisitor extends PrettyPrintVisitor {
         this.printJavaComment(n.getComment(), arg);
         if(n.isThis()) {
             this.printTypeArgs(n, arg);
-            this.printer.print(new Keyword("this").asString());
+            this.keyword(KeywordEnum.THIS);
         } else {
             if(n.getExpression().isPresent()) {
                 ((Expression)n.getExpression().get()).accept(this, arg);
@@ -813,7 +1032,7 @@ public class AstVisitor extends PrettyPrintVisitor {
             }
 
             this.printTypeArgs(n, arg);
-            this.printer.print(new Keyword("super").asString());
+            this.keyword(KeywordEnum.SUPER);
         }
 
         this.printArguments(n.getArguments(), arg);
@@ -848,7 +1067,7 @@ public class AstVisitor extends PrettyPrintVisitor {
 
     public void visit(AssertStmt n, Void arg) {
         this.printJavaComment(n.getComment(), arg);
-        this.printer.print(new Keyword("assert").asString() + " ");
+        this.keyword(KeywordEnum.ASSERT).print(" ");
         n.getCheck().accept(this, arg);
         if(n.getMessage().isPresent()) {
             this.printer.print(" : ");
@@ -868,6 +1087,9 @@ public class AstVisitor extends PrettyPrintVisitor {
 
             while(var3.hasNext()) {
                 Statement s = (Statement)var3.next();
+                if (!this.inRange(s)) {
+                    continue;
+                }
                 s.accept(this, arg);
                 this.printer.println();
             }
@@ -900,7 +1122,7 @@ public class AstVisitor extends PrettyPrintVisitor {
 
     public void visit(SwitchStmt n, Void arg) {
         this.printJavaComment(n.getComment(), arg);
-        this.printer.print(new Keyword("switch").asString() + "(");
+        this.keyword(KeywordEnum.SWITCH).print("(");
         n.getSelector().accept(this, arg);
         this.printer.println(") {");
         if(n.getEntries() != null) {
@@ -909,7 +1131,9 @@ public class AstVisitor extends PrettyPrintVisitor {
 
             while(var3.hasNext()) {
                 SwitchEntryStmt e = (SwitchEntryStmt)var3.next();
-                e.accept(this, arg);
+                if (this.inRange(e)) {
+                    e.accept(this, arg);
+                }
             }
 
             this.printer.unindent();
@@ -921,11 +1145,11 @@ public class AstVisitor extends PrettyPrintVisitor {
     public void visit(SwitchEntryStmt n, Void arg) {
         this.printJavaComment(n.getComment(), arg);
         if(n.getLabel().isPresent()) {
-            this.printer.print(new Keyword("case").asString() + " ");
+            this.keyword(KeywordEnum.CASE).print(" ");
             ((Expression)n.getLabel().get()).accept(this, arg);
             this.printer.print(":");
         } else {
-            this.printer.print(new Keyword("default").asString() + ":");
+            this.keyword(KeywordEnum.DEFAULT).print(":");
         }
 
         this.printer.println();
@@ -935,6 +1159,9 @@ public class AstVisitor extends PrettyPrintVisitor {
 
             while(var3.hasNext()) {
                 Statement s = (Statement)var3.next();
+                if (!this.inRange(s)) {
+                    continue;
+                }
                 s.accept(this, arg);
                 this.printer.println();
             }
@@ -945,7 +1172,7 @@ public class AstVisitor extends PrettyPrintVisitor {
 
     public void visit(BreakStmt n, Void arg) {
         this.printJavaComment(n.getComment(), arg);
-        this.printer.print(new Keyword("break").asString());
+        this.keyword(KeywordEnum.BREAK);
         if(n.getIdentifier().isPresent()) {
             this.printer.print(" ");
             this.printer.print((String)n.getIdentifier().get());
@@ -956,7 +1183,7 @@ public class AstVisitor extends PrettyPrintVisitor {
 
     public void visit(ReturnStmt n, Void arg) {
         this.printJavaComment(n.getComment(), arg);
-        this.printer.print(new Keyword("return").asString());
+        this.keyword(KeywordEnum.RETURN);
         if(n.getExpression().isPresent()) {
             this.printer.print(" ");
             ((Expression)n.getExpression().get()).accept(this, arg);
@@ -969,11 +1196,12 @@ public class AstVisitor extends PrettyPrintVisitor {
         this.printJavaComment(n.getComment(), arg);
         this.printMemberAnnotations(n.getAnnotations(), arg);
         this.printModifiers(n.getModifiers());
-        this.printer.print(new Keyword("enum").asString() + " ");
+        this.keyword(KeywordEnum.ENUM).print(" ");
         n.getName().accept(this, arg);
         Iterator i;
         if(!n.getImplements().isEmpty()) {
-            this.printer.print(" " + new Keyword("implements").asString() + " ");
+            this.printer.print(" ");
+            this.keyword(KeywordEnum.IMPLEMENTS).print(" ");
             i = n.getImplements().iterator();
 
             while(i.hasNext()) {
@@ -1037,7 +1265,7 @@ public class AstVisitor extends PrettyPrintVisitor {
     public void visit(InitializerDeclaration n, Void arg) {
         this.printJavaComment(n.getComment(), arg);
         if(n.isStatic()) {
-            this.printer.print(new Keyword("static").asString() + " ");
+            this.keyword(KeywordEnum.STATIC).print(" ");
         }
 
         n.getBlock().accept(this, arg);
@@ -1045,7 +1273,7 @@ public class AstVisitor extends PrettyPrintVisitor {
 
     public void visit(IfStmt n, Void arg) {
         this.printJavaComment(n.getComment(), arg);
-        this.printer.print(new Keyword("if").asString() + " (");
+        this.keyword(KeywordEnum.IF).print(" (");
         n.getCondition().accept(this, arg);
         boolean thenBlock = n.getThenStmt() instanceof BlockStmt;
         if(thenBlock) {
@@ -1070,10 +1298,10 @@ public class AstVisitor extends PrettyPrintVisitor {
             boolean elseIf = n.getElseStmt().orElse(null) instanceof IfStmt;
             boolean elseBlock = n.getElseStmt().orElse(null) instanceof BlockStmt;
             if(!elseIf && !elseBlock) {
-                this.printer.println(new Keyword("else").asString());
+                this.keyword(KeywordEnum.ELSE).println();
                 this.printer.indent();
             } else {
-                this.printer.print(new Keyword("else").asString() + " ");
+                this.keyword(KeywordEnum.ELSE).print(" ");
             }
 
             if(n.getElseStmt().isPresent()) {
@@ -1089,7 +1317,7 @@ public class AstVisitor extends PrettyPrintVisitor {
 
     public void visit(WhileStmt n, Void arg) {
         this.printJavaComment(n.getComment(), arg);
-        this.printer.print(new Keyword("while").asString() + " (");
+        this.keyword(KeywordEnum.WHILE).print(" (");
         n.getCondition().accept(this, arg);
         this.printer.print(") ");
         n.getBody().accept(this, arg);
@@ -1097,7 +1325,7 @@ public class AstVisitor extends PrettyPrintVisitor {
 
     public void visit(ContinueStmt n, Void arg) {
         this.printJavaComment(n.getComment(), arg);
-        this.printer.print(new Keyword("continue").asString() + "");
+        this.keyword(KeywordEnum.CONTINUE);
         if(n.getIdentifier().isPresent()) {
             this.printer.print(" ");
             this.printer.print((String)n.getIdentifier().get());
@@ -1108,16 +1336,17 @@ public class AstVisitor extends PrettyPrintVisitor {
 
     public void visit(DoStmt n, Void arg) {
         this.printJavaComment(n.getComment(), arg);
-        this.printer.print(new Keyword("do").asString() + " ");
+        this.keyword(KeywordEnum.DO).print(" ");
         n.getBody().accept(this, arg);
-        this.printer.print(" " + new Keyword("while").asString() + " (");
+        this.printer.print(" ");
+        this.keyword(KeywordEnum.WHILE).print(" (");
         n.getCondition().accept(this, arg);
         this.printer.print(");");
     }
 
     public void visit(ForeachStmt n, Void arg) {
         this.printJavaComment(n.getComment(), arg);
-        this.printer.print(new Keyword("for").asString() + " (");
+        this.keyword(KeywordEnum.FOR).print(" (");
         n.getVariable().accept(this, arg);
         this.printer.print(" : ");
         n.getIterable().accept(this, arg);
@@ -1127,7 +1356,7 @@ public class AstVisitor extends PrettyPrintVisitor {
 
     public void visit(ForStmt n, Void arg) {
         this.printJavaComment(n.getComment(), arg);
-        this.printer.print(new Keyword("for").asString() + " (");
+        this.keyword(KeywordEnum.FOR).print(" (");
         Iterator i;
         Expression e;
         if(n.getInitialization() != null) {
@@ -1166,14 +1395,14 @@ public class AstVisitor extends PrettyPrintVisitor {
 
     public void visit(ThrowStmt n, Void arg) {
         this.printJavaComment(n.getComment(), arg);
-        this.printer.print(new Keyword("throw").asString() + " ");
+        this.keyword(KeywordEnum.THROW).print(" ");
         n.getExpression().accept(this, arg);
         this.printer.print(";");
     }
 
     public void visit(SynchronizedStmt n, Void arg) {
         this.printJavaComment(n.getComment(), arg);
-        this.printer.print(new Keyword("synchronized").asString() + " (");
+        this.keyword(KeywordEnum.SYNCHRONIZED).print(" (");
         n.getExpression().accept(this, arg);
         this.printer.print(") ");
         n.getBody().accept(this, arg);
@@ -1181,7 +1410,7 @@ public class AstVisitor extends PrettyPrintVisitor {
 
     public void visit(TryStmt n, Void arg) {
         this.printJavaComment(n.getComment(), arg);
-        this.printer.print(new Keyword("try").asString() + " ");
+        this.keyword(KeywordEnum.TRY).print(" ");
         Iterator resources;
         if(!n.getResources().isEmpty()) {
             this.printer.print("(");
@@ -1217,7 +1446,8 @@ public class AstVisitor extends PrettyPrintVisitor {
         }
 
         if(n.getFinallyBlock().isPresent()) {
-            this.printer.print(" " + new Keyword("finally").asString() + " ");
+            this.printer.print(" ");
+            this.keyword(KeywordEnum.FINALLY).print(" ");
             ((BlockStmt)n.getFinallyBlock().get()).accept(this, arg);
         }
 
@@ -1225,7 +1455,8 @@ public class AstVisitor extends PrettyPrintVisitor {
 
     public void visit(CatchClause n, Void arg) {
         this.printJavaComment(n.getComment(), arg);
-        this.printer.print(" " + new Keyword("catch").asString() + " (");
+        this.printer.print(" ");
+        this.keyword(KeywordEnum.CATCH).print(" (");
         n.getParameter().accept(this, arg);
         this.printer.print(") ");
         n.getBody().accept(this, arg);
@@ -1256,7 +1487,8 @@ public class AstVisitor extends PrettyPrintVisitor {
         n.getName().accept(this, arg);
         this.printer.print("()");
         if(n.getDefaultValue().isPresent()) {
-            this.printer.print(" " + new Keyword("default").asString() + " ");
+            this.printer.print(" ");
+            this.keyword(KeywordEnum.DEFAULT).print(" ");
             ((Expression)n.getDefaultValue().get()).accept(this, arg);
         }
 
@@ -1393,7 +1625,8 @@ public class AstVisitor extends PrettyPrintVisitor {
 
     public void visit(SingleStaticImportDeclaration n, Void arg) {
         this.printJavaComment(n.getComment(), arg);
-        this.printer.print(new Keyword("import").asString() + " " + new Keyword("static").asString() + " ");
+        this.keyword(KeywordEnum.IMPORT).print(" ");
+        this.keyword(KeywordEnum.STATIC).print(" ");
         n.getType().accept(this, arg);
         this.printer.print(".");
         this.printer.print(n.getStaticMember());
@@ -1403,7 +1636,7 @@ public class AstVisitor extends PrettyPrintVisitor {
 
     public void visit(SingleTypeImportDeclaration n, Void arg) {
         this.printJavaComment(n.getComment(), arg);
-        this.printer.print(new Keyword("import").asString() + " ");
+        this.keyword(KeywordEnum.IMPORT).print(" ");
         n.getType().accept(this, arg);
         this.printer.println(";");
         this.printOrphanCommentsEnding(n);
@@ -1411,7 +1644,8 @@ public class AstVisitor extends PrettyPrintVisitor {
 
     public void visit(StaticImportOnDemandDeclaration n, Void arg) {
         this.printJavaComment(n.getComment(), arg);
-        this.printer.print(new Keyword("import").asString() + " " + new Keyword("static").asString() + " ");
+        this.keyword(KeywordEnum.IMPORT).print(" ");
+        this.keyword(KeywordEnum.STATIC).print(" ");
         n.getType().accept(this, arg);
         this.printer.println(".*;");
         this.printOrphanCommentsEnding(n);
@@ -1419,74 +1653,45 @@ public class AstVisitor extends PrettyPrintVisitor {
 
     public void visit(TypeImportOnDemandDeclaration n, Void arg) {
         this.printJavaComment(n.getComment(), arg);
-        this.printer.print(new Keyword("import").asString() + " ");
+        this.keyword(KeywordEnum.IMPORT).print(" ");
         n.getName().accept(this, arg);
         this.printer.println(".*;");
         this.printOrphanCommentsEnding(n);
     }
 
-    private void printOrphanCommentsBeforeThisChildNode(Node node) {
-        if(!(node instanceof Comment)) {
-            Node parent = (Node)node.getParentNode().orElse(null);
-            if(parent != null) {
-                LinkedList everything = new LinkedList();
-                everything.addAll(parent.getChildNodes());
-                PositionUtils.sortByBeginPosition(everything);
-                int positionOfTheChild = -1;
-
-                int positionOfPreviousChild;
-                for(positionOfPreviousChild = 0; positionOfPreviousChild < everything.size(); ++positionOfPreviousChild) {
-                    if(everything.get(positionOfPreviousChild) == node) {
-                        positionOfTheChild = positionOfPreviousChild;
-                    }
-                }
-
-                if(positionOfTheChild == -1) {
-                    throw new AssertionError("I am not a child of my parent.");
-                } else {
-                    positionOfPreviousChild = -1;
-
-                    int i;
-                    for(i = positionOfTheChild - 1; i >= 0 && positionOfPreviousChild == -1; --i) {
-                        if(!(everything.get(i) instanceof Comment)) {
-                            positionOfPreviousChild = i;
-                        }
-                    }
-
-                    for(i = positionOfPreviousChild + 1; i < positionOfTheChild; ++i) {
-                        Node nodeToPrint = (Node)everything.get(i);
-                        if(!(nodeToPrint instanceof Comment)) {
-                            throw new RuntimeException("Expected comment, instead " + nodeToPrint.getClass() + ". Position of previous child: " + positionOfPreviousChild + ", position of child " + positionOfTheChild);
-                        }
-
-                        nodeToPrint.accept(this, null);
-                    }
+    /**
+     * The index built when the compilation unit was visited. A render that starts below the compilation
+     * unit builds it once, from the top of the tree, on its first lookup.
+     */
+    private OrphanCommentIndex commentIndex(Node node) {
+        if (this.commentIndex == null) {
+            this.commentIndex = OrphanCommentIndex.build(OrphanCommentIndex.rootOf(node));
+        }
+        return this.commentIndex;
+    }
 
-                }
+    private void printOrphanCommentsBeforeThisChildNode(Node node) {
+        List<Comment> comments = this.commentIndex(node).before(node);
+        for (int i = 0; i < comments.size(); ++i) {
+            if (this.inRange(comments.get(i))) {
+                comments.get(i).accept(this, null);
             }
         }
     }
 
     private void printOrphanCommentsEnding(Node node) {
-        LinkedList everything = new LinkedList();
-        everything.addAll(node.getChildNodes());
-        PositionUtils.sortByBeginPosition(everything);
-        if(!everything.isEmpty()) {
-            int commentsAtEnd = 0;
-            boolean findingComments = true;
-
-            while(findingComments && commentsAtEnd < everything.size()) {
-                Node i = (Node)everything.get(everything.size() - 1 - commentsAtEnd);
-                findingComments = i instanceof Comment;
-                if(findingComments) {
-                    ++commentsAtEnd;
-                }
-            }
-
-            for(int var6 = 0; var6 < commentsAtEnd; ++var6) {
-                ((Node)everything.get(everything.size() - commentsAtEnd + var6)).accept(this, null);
+        List<Comment> comments = this.commentIndex(node).ending(node);
+        for (int i = 0; i < comments.size(); ++i) {
+            if (this.inRange(comments.get(i))) {
+                comments.get(i).accept(this, null);
             }
-
         }
     }
+
+    /**
+     * Notified with the output offsets of every member printed between the braces of a type body.
+     */
+    public interface MemberListener {
+        void onMember(BodyDeclaration<?> member, long start, long end);
+    }
 }
@@ -0,0 +1,262 @@
+import com.github.javaparser.ast.CompilationUnit;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Renders every .java file under a directory in parallel.
+ *
+ * Each file is one task. Visitors are stateful, so every worker thread keeps its own and resets it
+ * between files. The output tree mirrors the source tree, with {@code .html} appended to each name.
+ * Files the configuration sends to the {@link LexicalHighlighter} are counted as lexed. When the configuration
+ * asks for a symbol index, it is written next to each parsed file's output with {@code .symbols} appended,
+ * and when it asks for precompressed output a gzip copy is written with {@code .gz} appended, produced
+ * while rendering rather than by compressing the written file. With a {@link RenderCache}, files without a
+ * symbol index are taken from the cache, so an unchanged file is not parsed again; their gzip copy is then
+ * compressed from the cached output.
+ *
+ * The worker threads, and with them every visitor, lexer and compressor, live as long as the renderer and
+ * serve all its renders; {@link #close()} stops them and releases the compressors' native memory. Every
+ * output file is written under a temporary name and moved into place, so a failed render never leaves a
+ * truncated file behind.
+ */
+public class BatchRenderer implements AutoCloseable {
+    private static final ThreadLocal<MappedSourceReader> READERS = ThreadLocal.withInitial(MappedSourceReader::new);
+
+    private final AstConfiguration configuration;
+    private final ForkJoinPool pool;
+    private final ThreadLocal<AstVisitor> visitors;
+    private final ThreadLocal<LexicalHighlighter> lexers;
+    private final Queue<CompressedOutput> compressors = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<CompressedOutput> compressed = ThreadLocal.withInitial(() -> {
+        CompressedOutput out = new CompressedOutput();
+        this.compressors.add(out);
+        return out;
+    });
+    private RenderCache cache;
+
+    public BatchRenderer(AstConfiguration configuration) {
+        this(configuration, Runtime.getRuntime().availableProcessors());
+    }
+
+    public BatchRenderer(AstConfiguration configuration, int parallelism) {
+        this.configuration = configuration;
+        this.pool = new ForkJoinPool(parallelism);
+        this.visitors = ThreadLocal.withInitial(() -> AstVisitor.create(configuration, null));
+        this.lexers = ThreadLocal.withInitial(() -> new LexicalHighlighter(configuration));
+    }
+
+    /**
+     * @param cache where rendered files are looked up and kept, or null to render every file
+     */
+    public BatchRenderer setCache(RenderCache cache) {
+        this.cache = cache;
+        return this;
+    }
+
+    public static List<Path> findSources(Path sourceRoot, Path exclude) throws IOException {
+        try (Stream<Path> paths = Files.walk(sourceRoot)) {
+            return paths.filter(p -> p.toString().endsWith(".java"))
+                    .filter(p -> exclude == null || !p.startsWith(exclude))
+                    .filter(Files::isRegularFile)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    public Result render(Path sourceRoot, Path outputRoot) throws IOException {
+        Path source = sourceRoot.toAbsolutePath().normalize();
+        Path output = outputRoot.toAbsolutePath().normalize();
+        List<Path> files = findSources(source, output);
+
+        Result result = new Result();
+        long start = System.nanoTime();
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(files.size());
+        for (Path file : files) {
+            Path target = output.resolve(source.relativize(file).toString() + ".html");
+            tasks.add(this.pool.submit(() -> renderFile(file, target, result)));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+        result.nanos = System.nanoTime() - start;
+        return result;
+    }
+
+    private void renderFile(Path file, Path target, Result result) {
+        try {
+            if (this.cache != null && !this.configuration.isSymbolIndex()) {
+                renderCached(file, target, result);
+                return;
+            }
+            MappedSourceReader.MappedSource source = READERS.get().read(file);
+            CompilationUnit cu = LexicalHighlighter.parse(source.getChars(), source::parse, this.configuration);
+
+            Files.createDirectories(target.getParent());
+            AstVisitor visitor = this.visitors.get();
+            if (this.configuration.isPrecompress()) {
+                CompressedOutput out = this.compressed.get();
+                out.reset();
+                render(source, cu, visitor, out, result);
+                out.close();
+                write(target, out.getPlain());
+                write(target.resolveSibling(target.getFileName() + ".gz"), out.getGzip());
+            } else {
+                replace(target, temp -> {
+                    try (Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                        render(source, cu, visitor, out, result);
+                    }
+                });
+            }
+            if (cu != null && visitor.getSymbolIndex() != null) {
+                replace(target.resolveSibling(target.getFileName() + ".symbols"), temp -> {
+                    try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                        visitor.getSymbolIndex().writeTo(out);
+                    }
+                });
+            }
+            result.files.increment();
+            result.bytes.add(source.size());
+        } catch (IOException | RuntimeException e) {
+            result.failures.increment();
+            System.err.println("failed to render " + file + ": " + e.getMessage());
+        }
+    }
+
+    private void renderCached(Path file, Path target, Result result) throws IOException {
+        byte[] source = Files.readAllBytes(file);
+        ByteBuffer html = this.cache.render(source);
+        Files.createDirectories(target.getParent());
+        write(target, html.duplicate());
+        if (this.configuration.isPrecompress()) {
+            replace(target.resolveSibling(target.getFileName() + ".gz"), temp -> {
+                try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp))) {
+                    CompressedOutput.writeTo(html, out);
+                }
+            });
+        }
+        result.files.increment();
+        result.bytes.add(source.length);
+    }
+
+    private void render(MappedSourceReader.MappedSource source, CompilationUnit cu, AstVisitor visitor,
+                        Writer out, Result result) {
+        if (cu == null) {
+            this.lexers.get().highlight(source.getChars(), out);
+            result.lexed.increment();
+        } else {
+            visitor.reset(out);
+            cu.accept(visitor, null);
+            visitor.flush();
+        }
+    }
+
+    private static void write(Path target, ByteBuffer bytes) throws IOException {
+        replace(target, file -> {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+            }
+        });
+    }
+
+    /**
+     * Has {@code content} write a temporary file next to {@code target}, then moves it over the target.
+     */
+    private static void replace(Path target, FileContent content) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            content.writeTo(temp);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private interface FileContent {
+        void writeTo(Path file) throws IOException;
+    }
+
+    /**
+     * Stops the worker threads once the renders under way are done and frees the compressors.
+     */
+    @Override
+    public void close() {
+        this.pool.shutdown();
+        try {
+            this.pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        for (CompressedOutput out; (out = this.compressors.poll()) != null; ) {
+            out.end();
+        }
+    }
+
+    public static class Result {
+        private final LongAdder files = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder lexed = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private long nanos;
+
+        public long getFiles() {
+            return files.sum();
+        }
+
+        public long getFailures() {
+            return failures.sum();
+        }
+
+        /**
+         * Files rendered by the lexer instead of the visitor; they are included in {@link #getFiles()}.
+         */
+        public long getLexed() {
+            return lexed.sum();
+        }
+
+        public long getBytes() {
+            return bytes.sum();
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public double getFilesPerSecond() {
+            return getFiles() / (nanos / (double) TimeUnit.SECONDS.toNanos(1));
+        }
+
+        public double getMegabytesPerSecond() {
+            return getBytes() / (1024.0 * 1024.0) / (nanos / (double) TimeUnit.SECONDS.toNanos(1));
+        }
+
+        public String toString() {
+            return String.format("%d files (%d failed, %d lexed), %.1f MB in %d ms: %.1f files/s, %.2f MB/s",
+                    getFiles(), getFailures(), getLexed(), getBytes() / (1024.0 * 1024.0),
+                    TimeUnit.NANOSECONDS.toMillis(nanos), getFilesPerSecond(), getMegabytesPerSecond());
+        }
+    }
+}
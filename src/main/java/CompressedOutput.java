@@ -0,0 +1,266 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Sink that keeps a rendered document as UTF-8 and gzip at the same time, so it can be served precompressed.
+ *
+ * Chars are encoded chunk by chunk as the {@link SourcePrinter} drains them, and every encoded chunk is both
+ * kept and fed to a raw {@link Deflater}; the gzip header and trailer are written by hand around its output.
+ * The raw deflate variant is the gzip body without them, so it is a view rather than a second stream.
+ * Call {@link #close()} to finish a document and {@link #reset()} to start the next one; the deflater,
+ * encoder and buffers are reused, and {@link #end()} frees the deflater once the output is no longer needed.
+ * Not thread-safe; keep one per worker thread.
+ */
+public class CompressedOutput extends Writer {
+    private static final int CHUNK = 8192;
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+    private static final int GZIP_TRAILER = 8;
+
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final CharBuffer chars = CharBuffer.allocate(CHUNK);
+    private final ByteBuffer bytes = ByteBuffer.allocate(CHUNK * 3);
+    private final byte[] deflated = new byte[CHUNK];
+    private final Deflater deflater;
+    private final CRC32 crc = new CRC32();
+
+    private final Bytes plain = new Bytes();
+    private final Bytes gzip = new Bytes();
+    private boolean finished;
+
+    public CompressedOutput() {
+        this(Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param level a {@link Deflater} compression level
+     */
+    public CompressedOutput(int level) {
+        this.deflater = new Deflater(level, true);
+        reset();
+    }
+
+    /**
+     * Discards the last document and starts a new one, keeping the buffers' capacity.
+     */
+    public void reset() {
+        this.encoder.reset();
+        this.deflater.reset();
+        this.crc.reset();
+        this.chars.clear();
+        this.bytes.clear();
+        this.plain.reset();
+        this.gzip.reset();
+        this.gzip.write(GZIP_HEADER, 0, GZIP_HEADER.length);
+        this.finished = false;
+    }
+
+    @Override
+    public void write(char[] buffer, int offset, int length) {
+        ensureOpen();
+        while (length > 0) {
+            int n = Math.min(length, this.chars.remaining());
+            this.chars.put(buffer, offset, n);
+            offset += n;
+            length -= n;
+            encode();
+        }
+    }
+
+    @Override
+    public void write(String text, int offset, int length) {
+        ensureOpen();
+        int end = offset + length;
+        while (offset < end) {
+            int n = Math.min(end - offset, this.chars.remaining());
+            this.chars.put(text, offset, offset + n);
+            offset += n;
+            encode();
+        }
+    }
+
+    @Override
+    public void write(int c) {
+        ensureOpen();
+        this.chars.put((char) c);
+        if (!this.chars.hasRemaining()) {
+            encode();
+        }
+    }
+
+    @Override
+    public Writer append(CharSequence text, int start, int end) {
+        ensureOpen();
+        CharSequence sequence = text == null ? "null" : text;
+        for (int i = start; i < end; i++) {
+            this.chars.put(sequence.charAt(i));
+            if (!this.chars.hasRemaining()) {
+                encode();
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public Writer append(CharSequence text) {
+        CharSequence sequence = text == null ? "null" : text;
+        return append(sequence, 0, sequence.length());
+    }
+
+    /**
+     * Encodes the pending chars, keeping a trailing high surrogate until its pair arrives.
+     */
+    private void encode() {
+        this.chars.flip();
+        CoderResult result;
+        do {
+            result = this.encoder.encode(this.chars, this.bytes, false);
+            emit();
+        } while (result.isOverflow());
+        this.chars.compact();
+    }
+
+    private void emit() {
+        this.bytes.flip();
+        byte[] array = this.bytes.array();
+        int length = this.bytes.limit();
+        if (length > 0) {
+            this.plain.write(array, 0, length);
+            this.crc.update(array, 0, length);
+            this.deflater.setInput(array, 0, length);
+            while (!this.deflater.needsInput()) {
+                deflate();
+            }
+        }
+        this.bytes.clear();
+    }
+
+    private void deflate() {
+        int n = this.deflater.deflate(this.deflated);
+        this.gzip.write(this.deflated, 0, n);
+    }
+
+    /**
+     * Does nothing: the compressed stream is only complete once the document is closed.
+     */
+    @Override
+    public void flush() {
+    }
+
+    /**
+     * Finishes the document, after which its variants can be read. Closing twice has no effect.
+     */
+    @Override
+    public void close() {
+        if (this.finished) {
+            return;
+        }
+
+        this.chars.flip();
+        CoderResult result;
+        do {
+            result = this.encoder.encode(this.chars, this.bytes, true);
+            emit();
+        } while (result.isOverflow());
+        while (this.encoder.flush(this.bytes).isOverflow()) {
+            emit();
+        }
+        emit();
+        this.chars.clear();
+
+        this.deflater.finish();
+        while (!this.deflater.finished()) {
+            deflate();
+        }
+        writeIntLE(this.gzip, (int) this.crc.getValue());
+        writeIntLE(this.gzip, this.plain.size());
+        this.finished = true;
+    }
+
+    private static void writeIntLE(Bytes out, int value) {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+
+    /**
+     * The document as UTF-8, in a read-only buffer valid until the next {@link #reset()}.
+     */
+    public ByteBuffer getPlain() {
+        ensureFinished();
+        return this.plain.view(0, this.plain.size());
+    }
+
+    /**
+     * The document as a complete gzip stream, for Content-Encoding: gzip.
+     */
+    public ByteBuffer getGzip() {
+        ensureFinished();
+        return this.gzip.view(0, this.gzip.size());
+    }
+
+    /**
+     * The document as a raw deflate stream, without the zlib or gzip framing.
+     */
+    public ByteBuffer getDeflateRaw() {
+        ensureFinished();
+        return this.gzip.view(GZIP_HEADER.length, this.gzip.size() - GZIP_TRAILER);
+    }
+
+    /**
+     * Writes {@code variant}, one of the buffers above, to {@code out}.
+     */
+    public static void writeTo(ByteBuffer variant, OutputStream out) throws IOException {
+        WritableByteChannel channel = Channels.newChannel(out);
+        ByteBuffer remaining = variant.duplicate();
+        while (remaining.hasRemaining()) {
+            channel.write(remaining);
+        }
+    }
+
+    /**
+     * Releases the deflater's native memory. The output cannot be used afterwards.
+     */
+    public void end() {
+        this.deflater.end();
+    }
+
+    private void ensureOpen() {
+        if (this.finished) {
+            throw new IllegalStateException("document is closed; reset before writing the next one");
+        }
+    }
+
+    private void ensureFinished() {
+        if (!this.finished) {
+            throw new IllegalStateException("document is still open; close it first");
+        }
+    }
+
+    /**
+     * Byte array stream that hands out views of its buffer instead of copies.
+     */
+    private static class Bytes extends ByteArrayOutputStream {
+        Bytes() {
+            super(CHUNK);
+        }
+
+        ByteBuffer view(int start, int end) {
+            return ByteBuffer.wrap(this.buf, start, end - start).slice().asReadOnlyBuffer();
+        }
+    }
+}
@@ -0,0 +1,481 @@
+import Dom.DomTemplate;
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.Position;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.AnnotationMemberDeclaration;
+import com.github.javaparser.ast.body.BodyDeclaration;
+import com.github.javaparser.ast.body.ConstructorDeclaration;
+import com.github.javaparser.ast.body.FieldDeclaration;
+import com.github.javaparser.ast.body.InitializerDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.Parameter;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.body.VariableDeclarator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Renders two revisions of a file as one side-by-side diff, visiting each revision once.
+ *
+ * Members of top-level types are matched across revisions by signature. A member whose source is the same
+ * in both is only rendered from the new revision and emitted once, in a {@code diff-same} block both panes
+ * show; the old revision is rendered with those members filtered out. Changed, added and removed members
+ * and changed lines around them go into {@code diff-change} blocks holding a {@code diff-old} and a
+ * {@code diff-new} pane, where every changed line starts with a {@code diff-del} or {@code diff-add} marker.
+ * Markers are empty elements, so tags spanning several lines stay balanced.
+ */
+public class DiffRenderer {
+    /**
+     * Largest changed region, in compared pairs, that is aligned before it is shown as removed and added as a
+     * whole. Alignment keeps two rows of lengths, so this bounds the time of a diff, not its memory.
+     */
+    private static final long MAX_CELLS = 16L * 1024 * 1024;
+
+    private final AstVisitor visitor;
+    private final DomTemplate same;
+    private final DomTemplate change;
+    private final DomTemplate old;
+    private final DomTemplate fresh;
+    private final char[] removed;
+    private final char[] added;
+
+    private int sharedMembers;
+    private int changedMembers;
+
+    public DiffRenderer(AstConfiguration configuration) {
+        this.visitor = AstVisitor.create(configuration, null);
+        this.same = DomTemplate.of("div", null, "diff-same");
+        this.change = DomTemplate.of("div", null, "diff-change");
+        this.old = DomTemplate.of("div", null, "diff-old");
+        this.fresh = DomTemplate.of("div", null, "diff-new");
+        DomTemplate removed = DomTemplate.of(configuration.getDom(), null, "diff-del");
+        DomTemplate added = DomTemplate.of(configuration.getDom(), null, "diff-add");
+        this.removed = concat(removed.getOpen(), removed.getClose());
+        this.added = concat(added.getOpen(), added.getClose());
+    }
+
+    /**
+     * Parses both revisions and renders their diff; throws ParseProblemException when either does not parse.
+     */
+    public String render(String oldSource, String newSource) {
+        CompilationUnit oldUnit = JavaParser.parse(oldSource);
+        CompilationUnit newUnit = JavaParser.parse(newSource);
+        Map<Node, Member> oldMembers = members(oldUnit, oldSource);
+        Map<Node, Member> newMembers = members(newUnit, newSource);
+
+        Map<String, Member> newByKey = new HashMap<>();
+        for (Member member : newMembers.values()) {
+            newByKey.put(member.key, member);
+        }
+        Map<Node, Boolean> unchanged = new IdentityHashMap<>();
+        for (Map.Entry<Node, Member> entry : oldMembers.entrySet()) {
+            Member match = newByKey.get(entry.getValue().key);
+            if (match != null && match.source.equals(entry.getValue().source)) {
+                unchanged.put(entry.getKey(), Boolean.TRUE);
+                entry.getValue().unchanged = true;
+                match.unchanged = true;
+            }
+        }
+
+        List<Token> newTokens = tokens(newUnit, newMembers, null);
+        List<Token> oldTokens = tokens(oldUnit, oldMembers, unchanged);
+        Map<String, String> newTexts = new HashMap<>();
+        for (Token token : newTokens) {
+            if (token.member != null) {
+                newTexts.put(token.member.key, token.text);
+            }
+        }
+
+        this.sharedMembers = 0;
+        this.changedMembers = 0;
+        StringBuilder out = new StringBuilder(newSource.length() * 4);
+        int i = 0;
+        int j = 0;
+        for (int[] pair : align(oldTokens, newTokens)) {
+            appendChange(out, oldTokens.subList(i, pair[0]), newTokens.subList(j, pair[1]), newTexts);
+            appendMatch(out, oldTokens.get(pair[0]), newTokens.get(pair[1]));
+            i = pair[0] + 1;
+            j = pair[1] + 1;
+        }
+        appendChange(out, oldTokens.subList(i, oldTokens.size()), newTokens.subList(j, newTokens.size()), newTexts);
+        return out.toString();
+    }
+
+    /**
+     * Members of the last diff rendered once for both revisions.
+     */
+    public int getSharedMembers() {
+        return this.sharedMembers;
+    }
+
+    /**
+     * Members of the last diff that were changed, added or removed.
+     */
+    public int getChangedMembers() {
+        return this.changedMembers;
+    }
+
+    /**
+     * Renders {@code cu} and cuts the output into lines and top-level members. A member token carries the
+     * indentation before it and the line break after it, so every token is made of whole lines.
+     */
+    private List<Token> tokens(CompilationUnit cu, Map<Node, Member> members, Map<Node, Boolean> skipped) {
+        List<long[]> spans = new ArrayList<>();
+        List<Member> spanMembers = new ArrayList<>();
+        this.visitor.reset();
+        this.visitor.setMemberFilter(skipped == null ? null : member -> !skipped.containsKey(member));
+        this.visitor.setMemberListener((member, start, end) -> {
+            Member found = members.get(member);
+            if (found != null) {
+                spans.add(new long[]{start, end});
+                spanMembers.add(found);
+            }
+        });
+        try {
+            cu.accept(this.visitor, null);
+        } finally {
+            this.visitor.setMemberFilter(null);
+            this.visitor.setMemberListener(null);
+        }
+        String output = this.visitor.getSource();
+
+        List<Token> tokens = new ArrayList<>();
+        int position = 0;
+        for (int k = 0; k < spans.size(); k++) {
+            int start = (int) spans.get(k)[0];
+            int end = (int) spans.get(k)[1];
+            int lineStart = output.lastIndexOf('\n', start - 1) + 1;
+            addLines(tokens, output, position, lineStart);
+            if (end < output.length() && output.charAt(end) == '\n') {
+                ++end;
+            }
+            tokens.add(new Token(output.substring(lineStart, end), spanMembers.get(k)));
+            position = end;
+        }
+        addLines(tokens, output, position, output.length());
+        return tokens;
+    }
+
+    private static void addLines(List<Token> tokens, String text, int start, int end) {
+        for (String line : lines(text.substring(start, end))) {
+            tokens.add(new Token(line, null));
+        }
+    }
+
+    private void appendMatch(StringBuilder out, Token oldToken, Token newToken) {
+        if (newToken.member == null) {
+            out.append(newToken.text);
+        } else if (newToken.member.unchanged) {
+            ++this.sharedMembers;
+            out.append(this.same.getOpen()).append(newToken.text).append(this.same.getClose());
+        } else {
+            ++this.changedMembers;
+            List<String> oldLines = lines(oldToken.text);
+            List<String> newLines = lines(newToken.text);
+            List<int[]> pairs = align(oldLines, newLines);
+            out.append(this.change.getOpen()).append(this.old.getOpen());
+            appendMarked(out, oldLines, pairs, 0, this.removed);
+            out.append(this.old.getClose()).append(this.fresh.getOpen());
+            appendMarked(out, newLines, pairs, 1, this.added);
+            out.append(this.fresh.getClose()).append(this.change.getClose());
+        }
+    }
+
+    /**
+     * Appends {@code lines}, marking those that are not in the {@code side} of {@code pairs}.
+     */
+    private static void appendMarked(StringBuilder out, List<String> lines, List<int[]> pairs, int side, char[] marker) {
+        int next = 0;
+        for (int[] pair : pairs) {
+            for (; next < pair[side]; next++) {
+                out.append(marker).append(lines.get(next));
+            }
+            out.append(lines.get(next++));
+        }
+        for (; next < lines.size(); next++) {
+            out.append(marker).append(lines.get(next));
+        }
+    }
+
+    private void appendChange(StringBuilder out, List<Token> oldTokens, List<Token> newTokens, Map<String, String> newTexts) {
+        if (oldTokens.isEmpty() && newTokens.isEmpty()) {
+            return;
+        }
+        out.append(this.change.getOpen()).append(this.old.getOpen());
+        for (Token token : oldTokens) {
+            // an unchanged member that moved was not rendered from the old revision; its new render is the same
+            String text = token.member != null && token.member.unchanged ? newTexts.get(token.member.key) : token.text;
+            appendAll(out, text, this.removed);
+            if (token.member != null && !newTexts.containsKey(token.member.key)) {
+                ++this.changedMembers;
+            }
+        }
+        out.append(this.old.getClose()).append(this.fresh.getOpen());
+        for (Token token : newTokens) {
+            appendAll(out, token.text, this.added);
+            if (token.member != null) {
+                ++this.changedMembers;
+            }
+        }
+        out.append(this.fresh.getClose()).append(this.change.getClose());
+    }
+
+    private static void appendAll(StringBuilder out, String text, char[] marker) {
+        for (String line : lines(text)) {
+            out.append(marker).append(line);
+        }
+    }
+
+    /**
+     * Longest common subsequence of two token or line lists, as pairs of matching indices in order.
+     * Common ends are matched directly; the region between them is aligned in linear space by splitting it
+     * in half recursively (Hirschberg).
+     */
+    private static <T> List<int[]> align(List<T> a, List<T> b) {
+        int prefix = 0;
+        while (prefix < a.size() && prefix < b.size() && a.get(prefix).equals(b.get(prefix))) {
+            ++prefix;
+        }
+        int suffix = 0;
+        while (suffix < a.size() - prefix && suffix < b.size() - prefix
+                && a.get(a.size() - 1 - suffix).equals(b.get(b.size() - 1 - suffix))) {
+            ++suffix;
+        }
+
+        List<int[]> pairs = new ArrayList<>();
+        for (int k = 0; k < prefix; k++) {
+            pairs.add(new int[]{k, k});
+        }
+
+        int n = a.size() - prefix - suffix;
+        int m = b.size() - prefix - suffix;
+        if (n > 0 && m > 0 && (long) n * m <= MAX_CELLS) {
+            int[] forward = new int[m + 1];
+            int[] backward = new int[m + 1];
+            align(a, prefix, prefix + n, b, prefix, prefix + m, forward, backward, pairs);
+        }
+
+        for (int k = suffix; k > 0; k--) {
+            pairs.add(new int[]{a.size() - k, b.size() - k});
+        }
+        return pairs;
+    }
+
+    /**
+     * Adds the pairs of {@code a[aStart, aEnd)} and {@code b[bStart, bEnd)}: the first half of {@code a} is
+     * aligned with the longest prefix of {@code b} where the lengths of both halves add up to the most, so
+     * lines match as early as they can.
+     */
+    private static <T> void align(List<T> a, int aStart, int aEnd, List<T> b, int bStart, int bEnd,
+                                  int[] forward, int[] backward, List<int[]> pairs) {
+        if (aStart == aEnd || bStart == bEnd) {
+            return;
+        }
+        if (aEnd - aStart == 1) {
+            T item = a.get(aStart);
+            for (int y = bStart; y < bEnd; y++) {
+                if (item.equals(b.get(y))) {
+                    pairs.add(new int[]{aStart, y});
+                    return;
+                }
+            }
+            return;
+        }
+
+        int middle = (aStart + aEnd) >>> 1;
+        int m = bEnd - bStart;
+        // forward[k]: common length of a[aStart, middle) and b[bStart, bStart + k)
+        Arrays.fill(forward, 0, m + 1, 0);
+        for (int x = aStart; x < middle; x++) {
+            T item = a.get(x);
+            int diagonal = 0;
+            for (int y = 1; y <= m; y++) {
+                int above = forward[y];
+                forward[y] = item.equals(b.get(bStart + y - 1)) ? diagonal + 1 : Math.max(above, forward[y - 1]);
+                diagonal = above;
+            }
+        }
+        // backward[k]: common length of a[middle, aEnd) and b[bStart + k, bEnd)
+        Arrays.fill(backward, 0, m + 1, 0);
+        for (int x = aEnd - 1; x >= middle; x--) {
+            T item = a.get(x);
+            int diagonal = 0;
+            for (int y = m - 1; y >= 0; y--) {
+                int below = backward[y];
+                backward[y] = item.equals(b.get(bStart + y)) ? diagonal + 1 : Math.max(below, backward[y + 1]);
+                diagonal = below;
+            }
+        }
+
+        int split = 0;
+        for (int k = 1; k <= m; k++) {
+            if (forward[k] + backward[k] >= forward[split] + backward[split]) {
+                split = k;
+            }
+        }
+        align(a, aStart, middle, b, bStart, bStart + split, forward, backward, pairs);
+        align(a, middle, aEnd, b, bStart + split, bEnd, forward, backward, pairs);
+    }
+
+    /**
+     * Members of the top-level types of {@code cu}, keyed by node, with a signature unique within the file.
+     */
+    private static Map<Node, Member> members(CompilationUnit cu, String source) {
+        int[] lineStarts = lineStarts(source);
+        OrphanCommentIndex comments = OrphanCommentIndex.build(cu);
+        Map<String, Integer> seen = new HashMap<>();
+        Map<Node, Member> members = new IdentityHashMap<>();
+        for (TypeDeclaration<?> type : cu.getTypes()) {
+            for (BodyDeclaration<?> member : type.getMembers()) {
+                if (!member.getRange().isPresent()) {
+                    continue;
+                }
+                String signature = type.getName().getIdentifier() + "#" + signature(member);
+                int occurrence = seen.merge(signature, 1, Integer::sum);
+                String key = occurrence == 1 ? signature : signature + "#" + occurrence;
+
+                Position begin = member.getBegin().get();
+                List<Node> leading = new ArrayList<>(comments.before(member));
+                if (member.getComment() != null) {
+                    leading.add(member.getComment());
+                }
+                for (Node comment : leading) {
+                    if (comment.getBegin().isPresent() && comment.getBegin().get().isBefore(begin)) {
+                        begin = comment.getBegin().get();
+                    }
+                }
+                String text = source.substring(offset(lineStarts, begin), offset(lineStarts, member.getEnd().get()) + 1);
+                members.put(member, new Member(key, text));
+            }
+        }
+        return members;
+    }
+
+    private static String signature(BodyDeclaration<?> member) {
+        if (member instanceof MethodDeclaration) {
+            MethodDeclaration method = (MethodDeclaration) member;
+            return method.getName().getIdentifier() + parameters(method.getParameters());
+        } else if (member instanceof ConstructorDeclaration) {
+            return "<init>" + parameters(((ConstructorDeclaration) member).getParameters());
+        } else if (member instanceof FieldDeclaration) {
+            StringBuilder names = new StringBuilder("field");
+            for (VariableDeclarator variable : ((FieldDeclaration) member).getVariables()) {
+                names.append(' ').append(variable.getName().getIdentifier());
+            }
+            return names.toString();
+        } else if (member instanceof TypeDeclaration) {
+            return "type " + ((TypeDeclaration<?>) member).getName().getIdentifier();
+        } else if (member instanceof InitializerDeclaration) {
+            return ((InitializerDeclaration) member).isStatic() ? "<clinit>" : "<init>{}";
+        } else if (member instanceof AnnotationMemberDeclaration) {
+            return ((AnnotationMemberDeclaration) member).getName().getIdentifier() + "()";
+        }
+        return member.getClass().getSimpleName();
+    }
+
+    private static String parameters(List<Parameter> parameters) {
+        StringBuilder builder = new StringBuilder("(");
+        for (Parameter parameter : parameters) {
+            if (builder.length() > 1) {
+                builder.append(',');
+            }
+            builder.append(parameter.getType()).append(parameter.isVarArgs() ? "..." : "");
+        }
+        return builder.append(')').toString();
+    }
+
+    /**
+     * Splits {@code text} after every line break, keeping the breaks.
+     */
+    private static List<String> lines(String text) {
+        if (text.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> lines = new ArrayList<>();
+        int start = 0;
+        for (int end = text.indexOf('\n'); end != -1; end = text.indexOf('\n', start)) {
+            lines.add(text.substring(start, end + 1));
+            start = end + 1;
+        }
+        if (start < text.length()) {
+            lines.add(text.substring(start));
+        }
+        return lines;
+    }
+
+    private static int[] lineStarts(String source) {
+        int count = 1;
+        for (int i = 0; i < source.length(); i++) {
+            if (source.charAt(i) == '\n') {
+                ++count;
+            }
+        }
+        int[] starts = new int[count];
+        int line = 1;
+        for (int i = 0; i < source.length(); i++) {
+            if (source.charAt(i) == '\n') {
+                starts[line++] = i + 1;
+            }
+        }
+        return starts;
+    }
+
+    private static int offset(int[] lineStarts, Position position) {
+        return lineStarts[position.line - 1] + position.column - 1;
+    }
+
+    private static char[] concat(char[] first, char[] second) {
+        char[] both = new char[first.length + second.length];
+        System.arraycopy(first, 0, both, 0, first.length);
+        System.arraycopy(second, 0, both, first.length, second.length);
+        return both;
+    }
+
+    private static class Member {
+        private final String key;
+        private final String source;
+        private boolean unchanged;
+
+        Member(String key, String source) {
+            this.key = key;
+            this.source = source;
+        }
+    }
+
+    /**
+     * Whole lines of output: one line between members, or one top-level member.
+     */
+    private static class Token {
+        private final String text;
+        private final Member member;
+
+        Token(String text, Member member) {
+            this.text = text;
+            this.member = member;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Token)) {
+                return false;
+            }
+            Token token = (Token) other;
+            if (this.member == null || token.member == null) {
+                return this.member == token.member && this.text.equals(token.text);
+            }
+            return this.member.key.equals(token.member.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.member == null ? this.text.hashCode() : this.member.key.hashCode();
+        }
+    }
+}
@@ -12,6 +12,8 @@ public class Dom {
     private String id;
     private String name;
     private String type;
+    private String style;
+    private String href;
 
     public Dom() {
     }
@@ -40,6 +42,14 @@ public class Dom {
         this.type = type;
     }
 
+    public void setStyle(String style) {
+        this.style = style;
+    }
+
+    public void setHref(String href) {
+        this.href = href;
+    }
+
     private String getClassList(){
         if (this.classList.isEmpty()){
             return "";
@@ -83,8 +93,54 @@ public class Dom {
         return "type='" + this.type + "' ";
     }
 
+    private String getStyle(){
+        if (this.style == null){
+            return "";
+        }
+
+        return "style='" + this.style + "' ";
+    }
+
+    private String getHref(){
+        if (this.href == null){
+            return "";
+        }
+
+        return "href='" + escape(this.href) + "' ";
+    }
+
+    /**
+     * Escapes {@code value} for a quoted attribute, so it can neither end the attribute nor start markup.
+     */
+    private static String escape(String value) {
+        StringBuilder builder = null;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            String entity;
+            switch (c) {
+                case '&': entity = "&amp;"; break;
+                case '\'': entity = "&#39;"; break;
+                case '"': entity = "&quot;"; break;
+                case '<': entity = "&lt;"; break;
+                case '>': entity = "&gt;"; break;
+                default: entity = null;
+            }
+            if (entity != null && builder == null) {
+                builder = new StringBuilder(value.length() + 16).append(value, 0, i);
+            }
+            if (builder != null) {
+                if (entity != null) {
+                    builder.append(entity);
+                } else {
+                    builder.append(c);
+                }
+            }
+        }
+        return builder == null ? value : builder.toString();
+    }
+
     public String getDomStart(){
-        return "<" + this.domType + " " + getId() + getName() + getType() + getClassList() + ">";
+        return "<" + this.domType + " " + getId() + getName() + getType() + getClassList() + getStyle() + getHref() + ">";
     }
 
     public String getDomEnd(){
@@ -0,0 +1,75 @@
+package Dom;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Opening and closing tag of one (dom tag, type, classes) combination, built once through
+ * {@link Dom} and shared as char arrays, so printing an element never rebuilds its markup.
+ *
+ * The arrays are handed out as-is and must not be modified.
+ */
+public final class DomTemplate {
+    private static final ConcurrentMap<String, DomTemplate> CACHE = new ConcurrentHashMap<>();
+
+    private final char[] open;
+    private final char[] close;
+
+    private DomTemplate(String domType, String type, String style, String[] classes) {
+        Dom dom = new Dom(domType);
+        dom.setType(type);
+        dom.setStyle(style);
+        for (String cls : classes) {
+            dom.addClass(cls);
+        }
+        this.open = dom.getDomStart().toCharArray();
+        this.close = dom.getDomEnd().toCharArray();
+    }
+
+    /**
+     * @param type value of the type attribute, or null to leave it out
+     */
+    public static DomTemplate of(String domType, String type, String... classes) {
+        return styled(domType, type, null, classes);
+    }
+
+    /**
+     * @param type value of the type attribute, or null to leave it out
+     * @param style inline css of the element, or null to leave it out
+     */
+    public static DomTemplate styled(String domType, String type, String style, String... classes) {
+        StringBuilder key = new StringBuilder(domType).append('\u0000');
+        if (type != null) {
+            key.append('=').append(type);
+        }
+        key.append('\u0000');
+        if (style != null) {
+            key.append('=').append(style);
+        }
+        for (String cls : classes) {
+            key.append('\u0000').append(cls);
+        }
+
+        DomTemplate template = CACHE.get(key.toString());
+        if (template == null) {
+            template = new DomTemplate(domType, type, style, classes);
+            DomTemplate previous = CACHE.putIfAbsent(key.toString(), template);
+            if (previous != null) {
+                template = previous;
+            }
+        }
+        return template;
+    }
+
+    public static DomTemplate of(String domType, ElementType element) {
+        return of(domType, element.getType());
+    }
+
+    public char[] getOpen() {
+        return this.open;
+    }
+
+    public char[] getClose() {
+        return this.close;
+    }
+}
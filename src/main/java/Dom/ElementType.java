@@ -0,0 +1,45 @@
+package Dom;
+
+import theme.DecoratorType;
+
+/**
+ * The source constructs a {@code Processor} decorates, each with the markup type it is rendered with
+ * and the theme decorator it belongs to.
+ */
+public enum ElementType {
+    CLASS_DECLARE("class_declare", DecoratorType.CLASS, true),
+    METHOD_DECLARE("method_declare", DecoratorType.METHOD, true),
+    METHOD_CALL("method_call", DecoratorType.METHOD, false),
+    USE_ANNOTATION("use_annotation", DecoratorType.ANNOTATION, false),
+    CLASS("class", DecoratorType.CLASS, false),
+    NEW("new", DecoratorType.CLASS, false),
+    CONSTRUCTOR("constructor", DecoratorType.METHOD, true);
+
+    private final String type;
+    private final DecoratorType decorator;
+    private final boolean declaration;
+
+    ElementType(String type, DecoratorType decorator, boolean declaration) {
+        this.type = type;
+        this.decorator = decorator;
+        this.declaration = declaration;
+    }
+
+    /**
+     * Value of the {@code type} attribute in html output.
+     */
+    public String getType() {
+        return type;
+    }
+
+    public DecoratorType getDecorator() {
+        return decorator;
+    }
+
+    /**
+     * Whether the element declares its name rather than referring to one.
+     */
+    public boolean isDeclaration() {
+        return declaration;
+    }
+}
@@ -0,0 +1,53 @@
+package Dom;
+
+import theme.KeywordEnum;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Pre-rendered keyword fragments for one dom tag.
+ *
+ * Every fragment is built once through {@link Keyword#asString()} and then shared,
+ * so printing a keyword is a single array load instead of a new Keyword per token.
+ */
+public final class KeywordMarkup {
+    private static final ConcurrentMap<String, KeywordMarkup> CACHE = new ConcurrentHashMap<>();
+
+    private final String[] fragments;
+
+    private KeywordMarkup(String domType, String style) {
+        KeywordEnum[] keywords = KeywordEnum.values();
+        this.fragments = new String[keywords.length];
+        for (KeywordEnum keyword : keywords) {
+            Keyword dom = new Keyword(keyword);
+            dom.setDomType(domType);
+            dom.setStyle(style);
+            this.fragments[keyword.ordinal()] = dom.asString();
+        }
+    }
+
+    public static KeywordMarkup forDom(String domType) {
+        return forDom(domType, null);
+    }
+
+    /**
+     * @param style inline css every keyword gets, or null for none
+     */
+    public static KeywordMarkup forDom(String domType, String style) {
+        String key = style == null ? domType : domType + '\u0000' + style;
+        KeywordMarkup markup = CACHE.get(key);
+        if (markup == null) {
+            markup = new KeywordMarkup(domType, style);
+            KeywordMarkup previous = CACHE.putIfAbsent(key, markup);
+            if (previous != null) {
+                markup = previous;
+            }
+        }
+        return markup;
+    }
+
+    public String get(KeywordEnum keyword) {
+        return this.fragments[keyword.ordinal()];
+    }
+}
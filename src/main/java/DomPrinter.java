@@ -1,88 +1,96 @@
-import Dom.Dom;
+import Dom.DomTemplate;
+import Dom.ElementType;
 import com.github.javaparser.ast.Node;
-import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
-import com.github.javaparser.ast.body.ConstructorDeclaration;
-import com.github.javaparser.ast.body.MethodDeclaration;
-import com.github.javaparser.ast.expr.AnnotationExpr;
-import com.github.javaparser.ast.type.*;
-
-import java.util.Arrays;
-import java.util.List;
+import Dom.KeywordMarkup;
+import theme.DecoratorType;
+import theme.KeywordEnum;
+import theme.Style;
+import theme.Theme;
+import theme.ThemeOutput;
 
 /**
  * Created by bresai on 2016/12/20.
  */
 public class DomPrinter extends Processor {
     private final String domType;
-    private final AstVisitor visitor;
-    private final List<String> blackList =
-            Arrays.asList("Map", "List", "ArrayList", "LinkedList");
+    private Theme theme;
+    private ThemeOutput themeOutput;
+    private DomTemplate[] templates;
+    private KeywordMarkup keywords;
 
-    private boolean isBlack(String arg) {
-        return blackList.contains(arg);
+    public DomPrinter(String domType, AstVisitor visitor) {
+        this(domType, visitor, visitor.getPrinter());
     }
 
-    public DomPrinter(String domType, AstVisitor visitor) {
+    public DomPrinter(String domType, AstVisitor visitor, SourcePrinter printer) {
+        super(visitor, printer);
         this.domType = domType;
-        this.visitor = visitor;
+        applyTheme();
     }
 
-    private void printDom(Node node, Void arg, Dom dom){
-        visitor.getPrinter().print(dom.getDomStart());
-        node.accept(visitor, arg);
-        visitor.getPrinter().print(dom.getDomEnd());
+    /**
+     * Picks up the configured theme, rebuilding the templates only when it has changed.
+     * Runs once per render, so a theme switch never affects a document half way.
+     */
+    private void applyTheme() {
+        Theme theme = visitor.getConfiguration().getTheme();
+        ThemeOutput themeOutput = visitor.getConfiguration().getThemeOutput();
+        if (templates != null && theme == this.theme && themeOutput == this.themeOutput) {
+            return;
+        }
+
+        this.keywords = keywords(domType, theme, themeOutput);
+        this.templates = templates(domType, theme, themeOutput);
+        this.theme = theme;
+        this.themeOutput = themeOutput;
     }
 
-    @Override
-    public void printClassDeclaration(ClassOrInterfaceDeclaration node, Void arg) {
-        Dom dom = new Dom(domType);
-        dom.setType("class_declare");
-        printDom(node.getName(), arg, dom);
+    /**
+     * The element templates for a dom tag and theme, indexed by {@link ElementType} ordinal.
+     */
+    static DomTemplate[] templates(String domType, Theme theme, ThemeOutput themeOutput) {
+        ElementType[] elements = ElementType.values();
+        DomTemplate[] templates = new DomTemplate[elements.length];
+        for (ElementType element : elements) {
+            if (theme == null) {
+                templates[element.ordinal()] = DomTemplate.of(domType, element);
+            } else if (themeOutput == ThemeOutput.CLASS) {
+                templates[element.ordinal()] = DomTemplate.of(domType, element.getType(), Theme.cssClass(element.getDecorator()));
+            } else {
+                templates[element.ordinal()] = DomTemplate.styled(domType, element.getType(), css(theme, element.getDecorator()));
+            }
+        }
+        return templates;
     }
 
-    @Override
-    public void printMethodDeclaration(MethodDeclaration node, Void arg) {
-        Dom dom = new Dom(domType);
-        dom.setType("method_declare");
-        printDom(node.getName(), arg, dom);
+    static KeywordMarkup keywords(String domType, Theme theme, ThemeOutput themeOutput) {
+        return theme == null || themeOutput == ThemeOutput.CLASS
+                ? KeywordMarkup.forDom(domType)
+                : KeywordMarkup.forDom(domType, css(theme, DecoratorType.KEYWORD));
     }
 
-    @Override
-    public void printMethodCall(Node node, Void arg) {
-        Dom dom = new Dom(domType);
-        dom.setType("method_call");
-        printDom(node, arg, dom);
+    private static String css(Theme theme, DecoratorType decorator) {
+        Style style = theme.getStyle(decorator);
+        return style.getCss().isEmpty() ? null : style.getCss();
     }
 
     @Override
-    public void printAnnotation(AnnotationExpr node, Void arg) {
-        Dom dom = new Dom(domType);
-        dom.setType("use_annotation");
-        printDom(node, arg, dom);
+    public void reset() {
+        applyTheme();
     }
 
     @Override
-    public void printClassType(ClassOrInterfaceType node, Void arg) {
-        if (isBlack(node.getName().getIdentifier())){
-            node.getName().accept(visitor, arg);
-            return;
-        }
-        Dom dom = new Dom(domType);
-        dom.setType("class");
-        printDom(node.getName(), arg, dom);
+    public void printKeyword(KeywordEnum keyword) {
+        printer.print(keywords.get(keyword));
     }
 
     @Override
-    public void printNewObjectCreation(ClassOrInterfaceType node, Void arg) {
-        Dom dom = new Dom(domType);
-        dom.setType("new");
-        printDom(node.getName(), arg, dom);
+    protected void open(ElementType type, Node node) {
+        printer.print(templates[type.ordinal()].getOpen());
     }
 
     @Override
-    public void printConstructor(ConstructorDeclaration node, Void arg){
-        Dom dom = new Dom(domType);
-        dom.setType("constructor");
-        printDom(node.getName(), arg, dom);
+    protected void close(ElementType type, Node node) {
+        printer.print(templates[type.ordinal()].getClose());
     }
 }
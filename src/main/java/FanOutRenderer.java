@@ -0,0 +1,302 @@
+import Dom.ElementType;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.type.ClassOrInterfaceType;
+import theme.KeywordEnum;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * Renders one traversal into several outputs at once, e.g. html for the browser, a token stream for search
+ * and ANSI colours for logs.
+ *
+ * Every output has its own {@link SourcePrinter} and {@link Processor}. The visitor walks the tree once;
+ * what it prints itself is copied to every printer, and every keyword and element is handed to every
+ * processor, which decorates it in its own printer. The first output drives {@link AstVisitor.MemberListener}
+ * positions, chunking and the symbol index, which is recorded once for the whole traversal.
+ */
+public class FanOutRenderer {
+    private final AstConfiguration configuration;
+    private final List<SourcePrinter> printers = new ArrayList<>();
+    private final List<Appendable> sinks = new ArrayList<>();
+    private final List<BiFunction<AstVisitor, SourcePrinter, Processor>> factories = new ArrayList<>();
+    private AstVisitor visitor;
+    private FanOutProcessor processor;
+
+    public FanOutRenderer(AstConfiguration configuration) {
+        this.configuration = configuration;
+    }
+
+    /**
+     * Adds an output rendered by the processor {@code factory} creates for its printer.
+     *
+     * @param out sink to stream to, or null to keep the output in memory
+     */
+    public FanOutRenderer add(Appendable out, BiFunction<AstVisitor, SourcePrinter, Processor> factory) {
+        return add(out, this.configuration.getIndentStyle(), factory);
+    }
+
+    /**
+     * Adds an html output, with type links when the configuration has a type index.
+     */
+    public FanOutRenderer addHtml(Appendable out) {
+        return add(out, (visitor, printer) ->
+                AstVisitor.linkTypes(visitor, new DomPrinter(this.configuration.getDom(), visitor, printer)));
+    }
+
+    /**
+     * Adds a plain source output whose tokens are available from {@link #getProcessor(int)}.
+     * Its indentation is always literal, so token offsets point into plain text.
+     */
+    public FanOutRenderer addTokens(Appendable out) {
+        return add(out, IndentStyle.LITERAL, TokenStreamProcessor::new);
+    }
+
+    /**
+     * Adds an ANSI coloured output, with literal indentation.
+     */
+    public FanOutRenderer addAnsi(Appendable out) {
+        return add(out, IndentStyle.LITERAL, AnsiProcessor::new);
+    }
+
+    private FanOutRenderer add(Appendable out, IndentStyle indentStyle, BiFunction<AstVisitor, SourcePrinter, Processor> factory) {
+        if (this.visitor != null) {
+            throw new IllegalStateException("outputs cannot be added after the first render");
+        }
+        this.printers.add(new SourcePrinter(this.configuration.getIndent(), indentStyle,
+                this.configuration.getDom(), out, this.configuration.getBufferSize()));
+        this.sinks.add(out);
+        this.factories.add(factory);
+        return this;
+    }
+
+    /**
+     * Visits {@code node} once into every output and flushes the streaming ones.
+     */
+    public void render(Node node) {
+        if (this.visitor == null) {
+            if (this.printers.isEmpty()) {
+                throw new IllegalStateException("no outputs to render to");
+            }
+            this.visitor = new AstVisitor(this.configuration, new FanOutPrinter(this.printers), visitor -> {
+                List<Processor> processors = new ArrayList<>(this.factories.size());
+                for (int i = 0; i < this.factories.size(); i++) {
+                    processors.add(this.factories.get(i).apply(visitor, this.printers.get(i)));
+                }
+                this.processor = new FanOutProcessor(visitor, processors);
+                return this.processor;
+            });
+        }
+        node.accept(this.visitor, null);
+        this.visitor.flush();
+    }
+
+    /**
+     * Makes every output ready for another render.
+     *
+     * @param outs one sink per output, in the order they were added; null entries keep that output in memory
+     */
+    public void reset(Appendable... outs) {
+        if (outs.length != this.printers.size()) {
+            throw new IllegalArgumentException("expected " + this.printers.size() + " outputs, got " + outs.length);
+        }
+        for (int i = 0; i < outs.length; i++) {
+            this.sinks.set(i, outs[i]);
+        }
+        if (this.visitor != null) {
+            this.visitor.reset();
+        } else {
+            for (int i = 0; i < outs.length; i++) {
+                this.printers.get(i).reset(outs[i], Integer.MAX_VALUE);
+            }
+        }
+    }
+
+    public AstVisitor getVisitor() {
+        return this.visitor;
+    }
+
+    public SourcePrinter getPrinter(int index) {
+        return this.printers.get(index);
+    }
+
+    /**
+     * The processor of an output, or null before the first render.
+     */
+    public Processor getProcessor(int index) {
+        return this.processor == null ? null : this.processor.processors.get(index);
+    }
+
+    public String getSource(int index) {
+        return this.printers.get(index).getSource();
+    }
+
+    /**
+     * Copies everything the visitor prints to each output's printer.
+     */
+    private class FanOutPrinter extends SourcePrinter {
+        private final SourcePrinter[] printers;
+
+        FanOutPrinter(List<SourcePrinter> printers) {
+            super("");
+            this.printers = printers.toArray(new SourcePrinter[0]);
+        }
+
+        @Override
+        void reset(Appendable out, int retainedCapacity) {
+            for (int i = 0; i < this.printers.length; i++) {
+                this.printers[i].reset(FanOutRenderer.this.sinks.get(i), retainedCapacity);
+            }
+        }
+
+        @Override
+        SourcePrinter indent() {
+            for (SourcePrinter printer : this.printers) {
+                printer.indent();
+            }
+            return this;
+        }
+
+        @Override
+        SourcePrinter unindent() {
+            for (SourcePrinter printer : this.printers) {
+                printer.unindent();
+            }
+            return this;
+        }
+
+        @Override
+        SourcePrinter print(String arg) {
+            for (SourcePrinter printer : this.printers) {
+                printer.print(arg);
+            }
+            return this;
+        }
+
+        @Override
+        SourcePrinter print(char[] arg) {
+            for (SourcePrinter printer : this.printers) {
+                printer.print(arg);
+            }
+            return this;
+        }
+
+        @Override
+        SourcePrinter print(CharSequence arg, int start, int end) {
+            for (SourcePrinter printer : this.printers) {
+                printer.print(arg, start, end);
+            }
+            return this;
+        }
+
+        @Override
+        SourcePrinter println(String arg) {
+            for (SourcePrinter printer : this.printers) {
+                printer.println(arg);
+            }
+            return this;
+        }
+
+        @Override
+        SourcePrinter println() {
+            for (SourcePrinter printer : this.printers) {
+                printer.println();
+            }
+            return this;
+        }
+
+        @Override
+        void setChunkConsumer(Consumer<CharSequence> chunkConsumer) {
+            this.printers[0].setChunkConsumer(chunkConsumer);
+        }
+
+        @Override
+        void endChunk() {
+            this.printers[0].endChunk();
+        }
+
+        @Override
+        public long position() {
+            return this.printers[0].position();
+        }
+
+        @Override
+        long contentPosition() {
+            return this.printers[0].contentPosition();
+        }
+
+        @Override
+        public boolean isStreaming() {
+            return this.printers[0].isStreaming();
+        }
+
+        @Override
+        public void flush() {
+            for (SourcePrinter printer : this.printers) {
+                printer.flush();
+            }
+        }
+
+        @Override
+        public String getSource() {
+            return this.printers[0].getSource();
+        }
+    }
+
+    /**
+     * Hands every keyword and element boundary to each output's processor.
+     */
+    private static class FanOutProcessor extends Processor {
+        private final List<Processor> processors;
+
+        FanOutProcessor(AstVisitor visitor, List<Processor> processors) {
+            super(visitor);
+            this.processors = processors;
+        }
+
+        @Override
+        public void printKeyword(KeywordEnum keyword) {
+            for (Processor processor : this.processors) {
+                processor.printKeyword(keyword);
+            }
+        }
+
+        @Override
+        protected void compilationUnit(CompilationUnit unit) {
+            for (Processor processor : this.processors) {
+                processor.compilationUnit(unit);
+            }
+        }
+
+        @Override
+        protected void typeReference(ClassOrInterfaceType type) {
+            for (Processor processor : this.processors) {
+                processor.typeReference(type);
+            }
+        }
+
+        @Override
+        protected void open(ElementType type, Node node) {
+            for (Processor processor : this.processors) {
+                processor.open(type, node);
+            }
+        }
+
+        @Override
+        protected void close(ElementType type, Node node) {
+            for (Processor processor : this.processors) {
+                processor.close(type, node);
+            }
+        }
+
+        @Override
+        public void reset() {
+            for (Processor processor : this.processors) {
+                processor.reset();
+            }
+        }
+    }
+}
@@ -0,0 +1,284 @@
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseProblemException;
+import com.github.javaparser.ast.CompilationUnit;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Resident highlighting service on localhost: POST Java source to /highlight, get the html back.
+ *
+ * Requests are rendered by a fixed set of worker threads fed from a bounded queue. When the queue is
+ * full the request is answered with 503 straight away instead of waiting, so clients see backpressure.
+ * Each worker keeps its own visitor and buffers for the lifetime of the server, resetting them per request.
+ * With a precompressing configuration, clients that accept gzip get it compressed while it is rendered.
+ * A lines=first-last query parameter renders only what the source has on those lines.
+ * Bodies larger than the maximum body size are refused with 413 before they are rendered.
+ * With a {@link RenderCache}, whole-file requests that are not answered with gzip are served from it.
+ */
+public class HighlightServer {
+    public static final int DEFAULT_MAX_BODY_SIZE = 4 << 20;
+
+    private final AstConfiguration configuration;
+    private final int maxBodySize;
+    private final HttpServer server;
+    private final ThreadPoolExecutor workers;
+    private final ThreadLocal<Worker> worker;
+    private RenderCache cache;
+
+    /**
+     * @param port port to listen on, 0 for any free port
+     * @param workerCount number of render threads
+     * @param queueCapacity number of requests that may wait for a worker before new ones are rejected
+     */
+    public HighlightServer(AstConfiguration configuration, int port, int workerCount, int queueCapacity) throws IOException {
+        this(configuration, port, workerCount, queueCapacity, DEFAULT_MAX_BODY_SIZE);
+    }
+
+    /**
+     * @param maxBodySize largest request body in bytes that is read and rendered
+     */
+    public HighlightServer(AstConfiguration configuration, int port, int workerCount, int queueCapacity,
+                           int maxBodySize) throws IOException {
+        this.configuration = configuration;
+        this.maxBodySize = maxBodySize;
+        this.worker = ThreadLocal.withInitial(() -> new Worker(configuration));
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new WorkerThreadFactory());
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.server.createContext("/highlight", this::dispatch);
+    }
+
+    /**
+     * @param cache where rendered sources are looked up and kept, or null to render every request
+     */
+    public HighlightServer setCache(RenderCache cache) {
+        this.cache = cache;
+        return this;
+    }
+
+    public HighlightServer start() {
+        this.server.start();
+        return this;
+    }
+
+    public void stop() {
+        this.server.stop(0);
+        this.workers.shutdownNow();
+    }
+
+    public int getPort() {
+        return this.server.getAddress().getPort();
+    }
+
+    /**
+     * Runs on the server's dispatcher thread, so it only hands the exchange to a worker.
+     */
+    private void dispatch(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            respond(exchange, 405, "POST Java source to /highlight\n");
+            return;
+        }
+
+        try {
+            this.workers.execute(() -> handle(exchange));
+        } catch (RejectedExecutionException e) {
+            respond(exchange, 503, "too many pending requests\n");
+        }
+    }
+
+    private void handle(HttpExchange exchange) {
+        try {
+            Worker worker = this.worker.get();
+            String source = worker.readBody(exchange.getRequestBody(), this.maxBodySize);
+            if (source == null) {
+                respond(exchange, 413, "source is larger than " + this.maxBodySize + " bytes\n");
+                return;
+            }
+
+            boolean compressed = this.configuration.isPrecompress() && acceptsGzip(exchange);
+            if (this.cache != null && !compressed && !hasLineRange(exchange)) {
+                ByteBuffer html;
+                try {
+                    html = this.cache.render(worker.body.toByteArray());
+                } catch (ParseProblemException e) {
+                    respond(exchange, 400, reason(e));
+                    return;
+                }
+                exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+                exchange.sendResponseHeaders(200, html.remaining());
+                try (OutputStream out = exchange.getResponseBody()) {
+                    CompressedOutput.writeTo(html, out);
+                }
+                return;
+            }
+
+            CompilationUnit cu;
+            try {
+                cu = LexicalHighlighter.parse(source, () -> JavaParser.parse(source), this.configuration);
+                int[] lines = lineRange(exchange);
+                worker.visitor.setLineRange(lines[0], lines[1]);
+            } catch (ParseProblemException | IllegalArgumentException e) {
+                respond(exchange, 400, reason(e));
+                return;
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+            if (compressed) {
+                worker.compressed.reset();
+                worker.render(cu, source, worker.compressed);
+                worker.compressed.close();
+                ByteBuffer gzip = worker.compressed.getGzip();
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                exchange.sendResponseHeaders(200, gzip.remaining());
+                try (OutputStream out = exchange.getResponseBody()) {
+                    CompressedOutput.writeTo(gzip, out);
+                }
+                return;
+            }
+
+            exchange.sendResponseHeaders(200, 0);
+            try (Writer out = new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8)) {
+                worker.render(cu, source, out);
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("failed to highlight " + exchange.getRequestURI() + ": " + e);
+            fail(exchange);
+        }
+    }
+
+    /**
+     * Answers 500 when nothing has been sent yet; otherwise the response is already under way and
+     * closing the exchange is all that can be done.
+     */
+    private static void fail(HttpExchange exchange) {
+        try {
+            if (exchange.getResponseCode() == -1) {
+                respond(exchange, 500, "internal error\n");
+            }
+        } catch (IOException e) {
+            System.err.println("failed to report an error for " + exchange.getRequestURI() + ": " + e);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static boolean hasLineRange(HttpExchange exchange) {
+        String query = exchange.getRequestURI().getRawQuery();
+        return query != null && (query.startsWith("lines=") || query.contains("&lines="));
+    }
+
+    /**
+     * The lines=first-last query parameter, or every line when there is none.
+     */
+    private static int[] lineRange(HttpExchange exchange) {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                if (parameter.startsWith("lines=")) {
+                    return AstPrinter.lineRange(parameter.substring("lines=".length()));
+                }
+            }
+        }
+        return new int[]{1, Integer.MAX_VALUE};
+    }
+
+    private static boolean acceptsGzip(HttpExchange exchange) {
+        for (String accepted : exchange.getRequestHeaders().getOrDefault("Accept-Encoding", Collections.emptyList())) {
+            if (accepted.contains("gzip")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Text of a 400 response: the message of {@code e}, or its type when it has none.
+     */
+    private static String reason(Exception e) {
+        return e.getMessage() != null ? e.getMessage() : String.valueOf(e) + "\n";
+    }
+
+    private static void respond(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] body = message.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Per-thread state, reused across every request the thread serves.
+     */
+    private static class Worker {
+        private final AstVisitor visitor;
+        private final LexicalHighlighter lexer;
+        private final CompressedOutput compressed = new CompressedOutput();
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream(8192);
+        private final byte[] chunk = new byte[8192];
+
+        Worker(AstConfiguration configuration) {
+            this.visitor = AstVisitor.create(configuration, null);
+            this.lexer = new LexicalHighlighter(configuration);
+        }
+
+        /**
+         * The request body as text, or null once it grows past {@code maxSize} bytes, so the buffer
+         * never holds more than that.
+         */
+        String readBody(InputStream in, int maxSize) throws IOException {
+            this.body.reset();
+            try (InputStream stream = in) {
+                for (int n = stream.read(this.chunk); n > 0; n = stream.read(this.chunk)) {
+                    if (this.body.size() + n > maxSize) {
+                        return null;
+                    }
+                    this.body.write(this.chunk, 0, n);
+                }
+            }
+            return this.body.toString(StandardCharsets.UTF_8.name());
+        }
+
+        /**
+         * Renders {@code cu}, or {@code source} lexically when it is null.
+         */
+        void render(CompilationUnit cu, String source, Writer out) {
+            if (cu == null) {
+                this.lexer.highlight(source, out);
+                return;
+            }
+            this.visitor.reset(out);
+            cu.accept(this.visitor, null);
+            this.visitor.flush();
+        }
+    }
+
+    private static class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "highlight-worker-" + this.count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,273 @@
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseProblemException;
+import com.github.javaparser.Position;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.AnnotationDeclaration;
+import com.github.javaparser.ast.body.BodyDeclaration;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.EnumDeclaration;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.imports.ImportDeclaration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the last render of a file and re-renders only the member an edit falls into.
+ *
+ * The first render records, for every member of a top-level type, its range in the source and in the
+ * output. When an edit lies entirely inside one of those members, only that member is parsed and visited
+ * again and its fragment is spliced into the previous output. Any other edit renders the whole file.
+ * The member is parsed under the file's own package and imports and at its own line and column, so type
+ * links and recorded positions come out as a full render would make them.
+ */
+public class IncrementalRenderer {
+    private final AstConfiguration configuration;
+    private final StringBuilder output = new StringBuilder();
+    private final List<Span> spans = new ArrayList<>();
+    private String source;
+    private String header;
+    private CompilationUnit compilationUnit;
+    private boolean incremental;
+
+    public IncrementalRenderer(AstConfiguration configuration) {
+        this.configuration = configuration;
+    }
+
+    /**
+     * Renders {@code source} from scratch and remembers its member spans.
+     */
+    public CharSequence render(String source) {
+        CompilationUnit cu = JavaParser.parse(source);
+        int[] lineStarts = lineStarts(source);
+        OrphanCommentIndex comments = OrphanCommentIndex.build(cu);
+        List<Span> found = new ArrayList<>();
+
+        AstVisitor visitor = AstVisitor.create(this.configuration, null);
+        visitor.setMemberListener((member, outputStart, outputEnd) -> {
+            Node parent = member.getParentNode().orElse(null);
+            if (!(parent instanceof TypeDeclaration) || !(parent.getParentNode().orElse(null) instanceof CompilationUnit)) {
+                return;
+            }
+            String opening = opening(parent);
+            if (opening == null || !member.getRange().isPresent() || !comments.before(member).isEmpty()) {
+                return;
+            }
+
+            Position begin = member.getBegin().get();
+            if (member.getComment() != null && member.getComment().getBegin().isPresent()
+                    && member.getComment().getBegin().get().isBefore(begin)) {
+                begin = member.getComment().getBegin().get();
+            }
+            Position end = member.getEnd().get();
+            found.add(new Span(opening, offset(lineStarts, begin), offset(lineStarts, end) + 1,
+                    (int) outputStart, (int) outputEnd));
+        });
+        cu.accept(visitor, null);
+
+        this.source = source;
+        this.header = header(cu, source, lineStarts);
+        this.compilationUnit = cu;
+        this.output.setLength(0);
+        this.output.append(visitor.getSource());
+        this.spans.clear();
+        this.spans.addAll(found);
+        this.incremental = false;
+        return this.output;
+    }
+
+    /**
+     * Renders an edited version of the last source, splicing in a single member when possible.
+     */
+    public CharSequence update(String newSource) {
+        if (this.source == null) {
+            return render(newSource);
+        }
+
+        String oldSource = this.source;
+        int limit = Math.min(oldSource.length(), newSource.length());
+        int prefix = 0;
+        while (prefix < limit && oldSource.charAt(prefix) == newSource.charAt(prefix)) {
+            ++prefix;
+        }
+        int suffix = 0;
+        while (suffix < limit - prefix
+                && oldSource.charAt(oldSource.length() - 1 - suffix) == newSource.charAt(newSource.length() - 1 - suffix)) {
+            ++suffix;
+        }
+        if (prefix == oldSource.length() && prefix == newSource.length()) {
+            this.incremental = true;
+            return this.output;
+        }
+
+        int changedEnd = oldSource.length() - suffix;
+        int index = -1;
+        for (int i = 0; i < this.spans.size(); i++) {
+            Span span = this.spans.get(i);
+            if (span.sourceStart <= prefix && changedEnd <= span.sourceEnd) {
+                index = i;
+                break;
+            }
+        }
+        if (index == -1) {
+            return render(newSource);
+        }
+
+        Span span = this.spans.get(index);
+        int sourceDelta = newSource.length() - oldSource.length();
+        BodyDeclaration<?> member = parseMember(this.header + span.opening, newSource, span.sourceStart,
+                span.sourceEnd + sourceDelta);
+        if (member == null) {
+            return render(newSource);
+        }
+
+        AstVisitor visitor = AstVisitor.create(this.configuration, null);
+        visitor.getPrinter().indent();
+        member.accept(visitor, null);
+        String fragment = visitor.getSource();
+
+        this.output.replace(span.outputStart, span.outputEnd, fragment);
+        int outputDelta = fragment.length() - (span.outputEnd - span.outputStart);
+        span.sourceEnd += sourceDelta;
+        span.outputEnd += outputDelta;
+        for (int i = index + 1; i < this.spans.size(); i++) {
+            this.spans.get(i).shift(sourceDelta, outputDelta);
+        }
+
+        this.source = newSource;
+        this.incremental = true;
+        return this.output;
+    }
+
+    public CharSequence getOutput() {
+        return this.output;
+    }
+
+    /**
+     * The compilation unit of the last full render. Members spliced in since then are not attached to it.
+     */
+    public CompilationUnit getCompilationUnit() {
+        return this.compilationUnit;
+    }
+
+    /**
+     * Whether the last {@link #update(String)} was served without rendering the whole file.
+     */
+    public boolean isIncremental() {
+        return this.incremental;
+    }
+
+    /**
+     * Parses the member between {@code start} and {@code end} of {@code source} on its own, after
+     * {@code opening} on the first line and padded so that it keeps its line and column.
+     */
+    private static BodyDeclaration<?> parseMember(String opening, String source, int start, int end) {
+        int lineStart = source.lastIndexOf('\n', start - 1) + 1;
+        if (lineStart == 0) {
+            return null;
+        }
+        StringBuilder text = new StringBuilder(opening.length() + end - lineStart + 64).append(opening);
+        for (int i = 0; i < lineStart; i++) {
+            if (source.charAt(i) == '\n') {
+                text.append('\n');
+            }
+        }
+        for (int i = lineStart; i < start; i++) {
+            text.append(source.charAt(i) == '\t' ? '\t' : ' ');
+        }
+        text.append(source, start, end).append("\n}");
+
+        CompilationUnit cu;
+        try {
+            cu = JavaParser.parse(text.toString());
+        } catch (ParseProblemException e) {
+            return null;
+        }
+        if (cu.getTypes().size() != 1 || cu.getType(0).getMembers().size() != 1
+                || !cu.getType(0).getOrphanComments().isEmpty()) {
+            return null;
+        }
+        return cu.getType(0).getMember(0);
+    }
+
+    /**
+     * The package and imports of {@code cu} as written, on a single line, for members to be parsed under.
+     */
+    private static String header(CompilationUnit cu, String source, int[] lineStarts) {
+        StringBuilder header = new StringBuilder();
+        cu.getPackage().ifPresent(declaration -> appendSource(header, declaration, source, lineStarts));
+        for (ImportDeclaration declaration : cu.getImports()) {
+            appendSource(header, declaration, source, lineStarts);
+        }
+        return header.toString();
+    }
+
+    private static void appendSource(StringBuilder header, Node node, String source, int[] lineStarts) {
+        int start = offset(lineStarts, node.getBegin().get());
+        int end = offset(lineStarts, node.getEnd().get()) + 1;
+        for (int i = start; i < end; i++) {
+            char c = source.charAt(i);
+            header.append(c == '\n' || c == '\r' ? ' ' : c);
+        }
+        header.append(' ');
+    }
+
+    /**
+     * Opening of a type body a single member can be parsed in, matching the kind of its real parent.
+     */
+    private static String opening(Node type) {
+        if (type instanceof ClassOrInterfaceDeclaration) {
+            return ((ClassOrInterfaceDeclaration) type).isInterface() ? "interface __ {" : "class __ {";
+        } else if (type instanceof EnumDeclaration) {
+            return "enum __ {;";
+        } else if (type instanceof AnnotationDeclaration) {
+            return "@interface __ {";
+        }
+        return null;
+    }
+
+    private static int[] lineStarts(String source) {
+        int count = 1;
+        for (int i = 0; i < source.length(); i++) {
+            if (source.charAt(i) == '\n') {
+                ++count;
+            }
+        }
+        int[] starts = new int[count];
+        int line = 1;
+        for (int i = 0; i < source.length(); i++) {
+            if (source.charAt(i) == '\n') {
+                starts[line++] = i + 1;
+            }
+        }
+        return starts;
+    }
+
+    private static int offset(int[] lineStarts, Position position) {
+        return lineStarts[position.line - 1] + position.column - 1;
+    }
+
+    private static class Span {
+        private final String opening;
+        private int sourceStart;
+        private int sourceEnd;
+        private int outputStart;
+        private int outputEnd;
+
+        Span(String opening, int sourceStart, int sourceEnd, int outputStart, int outputEnd) {
+            this.opening = opening;
+            this.sourceStart = sourceStart;
+            this.sourceEnd = sourceEnd;
+            this.outputStart = outputStart;
+            this.outputEnd = outputEnd;
+        }
+
+        void shift(int sourceDelta, int outputDelta) {
+            this.sourceStart += sourceDelta;
+            this.sourceEnd += sourceDelta;
+            this.outputStart += outputDelta;
+            this.outputEnd += outputDelta;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+import Dom.DomTemplate;
+
+/**
+ * How {@link SourcePrinter} writes the indentation at the start of each line.
+ */
+public enum IndentStyle {
+    /**
+     * The configured indent string repeated once per level.
+     */
+    LITERAL {
+        @Override
+        String prefix(int level, String indentation, String domType) {
+            StringBuilder prefix = new StringBuilder(level * indentation.length());
+            for (int i = 0; i < level; i++) {
+                prefix.append(indentation);
+            }
+            return prefix.toString();
+        }
+    },
+    /**
+     * One tab per level, whatever the indent string is.
+     */
+    TABS {
+        @Override
+        String prefix(int level, String indentation, String domType) {
+            StringBuilder prefix = new StringBuilder(level);
+            for (int i = 0; i < level; i++) {
+                prefix.append('\t');
+            }
+            return prefix.toString();
+        }
+    },
+    /**
+     * An empty element with class {@code indent-<level>}, left for the stylesheet to pad.
+     * Its size does not grow with the level, so it is smaller than spaces from about eight levels deep.
+     * It only makes sense for html output.
+     */
+    ELEMENT {
+        @Override
+        String prefix(int level, String indentation, String domType) {
+            if (level == 0) {
+                return "";
+            }
+            DomTemplate template = DomTemplate.of(domType, null, "indent-" + level);
+            return new String(template.getOpen()) + new String(template.getClose());
+        }
+    };
+
+    abstract String prefix(int level, String indentation, String domType);
+}
@@ -0,0 +1,670 @@
+import com.github.javaparser.ast.*;
+import com.github.javaparser.ast.body.*;
+import com.github.javaparser.ast.comments.BlockComment;
+import com.github.javaparser.ast.comments.JavadocComment;
+import com.github.javaparser.ast.comments.LineComment;
+import com.github.javaparser.ast.expr.*;
+import com.github.javaparser.ast.imports.*;
+import com.github.javaparser.ast.stmt.*;
+import com.github.javaparser.ast.type.*;
+
+import java.util.Arrays;
+
+/**
+ * AstVisitor that times every visit overload and processor call into a {@link RenderStats}.
+ *
+ * Nested calls are tracked on a small stack, so each probe gets both its total time and its
+ * self time with the recorded children subtracted.
+ */
+public class InstrumentedAstVisitor extends AstVisitor {
+    private final RenderStats stats;
+    private long[] childNanos = new long[64];
+    private int depth = 0;
+
+    public InstrumentedAstVisitor(AstConfiguration configuration, Appendable out, RenderStats stats) {
+        super(configuration, out);
+        this.stats = stats;
+    }
+
+    @Override
+    protected Processor decorate(Processor processor) {
+        return new InstrumentedProcessor(this, processor);
+    }
+
+    @Override
+    public void reset(Appendable out, int retainedCapacity) {
+        super.reset(out, retainedCapacity);
+        this.depth = 0;
+    }
+
+    long enter() {
+        if (++this.depth == this.childNanos.length) {
+            this.childNanos = Arrays.copyOf(this.childNanos, this.depth * 2);
+        }
+        this.childNanos[this.depth] = 0;
+        return System.nanoTime();
+    }
+
+    void exit(RenderStats.Probe probe, long start) {
+        long elapsed = System.nanoTime() - start;
+        long self = elapsed - this.childNanos[this.depth];
+        this.childNanos[--this.depth] += elapsed;
+        this.stats.record(probe, elapsed, self);
+    }
+
+    @Override
+    public void visit(CompilationUnit n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.CompilationUnit, start);
+    }
+
+    @Override
+    public void visit(PackageDeclaration n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.PackageDeclaration, start);
+    }
+
+    @Override
+    public void visit(NameExpr n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.NameExpr, start);
+    }
+
+    @Override
+    public void visit(Name n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.Name, start);
+    }
+
+    @Override
+    public void visit(SimpleName n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.SimpleName, start);
+    }
+
+    @Override
+    public void visit(ClassOrInterfaceDeclaration n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.ClassOrInterfaceDeclaration, start);
+    }
+
+    @Override
+    public void visit(JavadocComment n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.JavadocComment, start);
+    }
+
+    @Override
+    public void visit(ClassOrInterfaceType n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.ClassOrInterfaceType, start);
+    }
+
+    @Override
+    public void visit(TypeParameter n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.TypeParameter, start);
+    }
+
+    @Override
+    public void visit(PrimitiveType n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.PrimitiveType, start);
+    }
+
+    @Override
+    public void visit(ArrayType n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.ArrayType, start);
+    }
+
+    @Override
+    public void visit(ArrayCreationLevel n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.ArrayCreationLevel, start);
+    }
+
+    @Override
+    public void visit(IntersectionType n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.IntersectionType, start);
+    }
+
+    @Override
+    public void visit(UnionType n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.UnionType, start);
+    }
+
+    @Override
+    public void visit(WildcardType n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.WildcardType, start);
+    }
+
+    @Override
+    public void visit(UnknownType n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.UnknownType, start);
+    }
+
+    @Override
+    public void visit(FieldDeclaration n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.FieldDeclaration, start);
+    }
+
+    @Override
+    public void visit(VariableDeclarator n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.VariableDeclarator, start);
+    }
+
+    @Override
+    public void visit(ArrayInitializerExpr n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.ArrayInitializerExpr, start);
+    }
+
+    @Override
+    public void visit(VoidType n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.VoidType, start);
+    }
+
+    @Override
+    public void visit(ArrayAccessExpr n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.ArrayAccessExpr, start);
+    }
+
+    @Override
+    public void visit(ArrayCreationExpr n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.ArrayCreationExpr, start);
+    }
+
+    @Override
+    public void visit(AssignExpr n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.AssignExpr, start);
+    }
+
+    @Override
+    public void visit(BinaryExpr n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.BinaryExpr, start);
+    }
+
+    @Override
+    public void visit(CastExpr n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.CastExpr, start);
+    }
+
+    @Override
+    public void visit(ClassExpr n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.ClassExpr, start);
+    }
+
+    @Override
+    public void visit(ConditionalExpr n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.ConditionalExpr, start);
+    }
+
+    @Override
+    public void visit(EnclosedExpr n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.EnclosedExpr, start);
+    }
+
+    @Override
+    public void visit(FieldAccessExpr n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.FieldAccessExpr, start);
+    }
+
+    @Override
+    public void visit(InstanceOfExpr n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.InstanceOfExpr, start);
+    }
+
+    @Override
+    public void visit(CharLiteralExpr n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.CharLiteralExpr, start);
+    }
+
+    @Override
+    public void visit(DoubleLiteralExpr n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.DoubleLiteralExpr, start);
+    }
+
+    @Override
+    public void visit(IntegerLiteralExpr n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.IntegerLiteralExpr, start);
+    }
+
+    @Override
+    public void visit(LongLiteralExpr n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.LongLiteralExpr, start);
+    }
+
+    @Override
+    public void visit(StringLiteralExpr n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.StringLiteralExpr, start);
+    }
+
+    @Override
+    public void visit(BooleanLiteralExpr n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.BooleanLiteralExpr, start);
+    }
+
+    @Override
+    public void visit(NullLiteralExpr n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.NullLiteralExpr, start);
+    }
+
+    @Override
+    public void visit(ThisExpr n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.ThisExpr, start);
+    }
+
+    @Override
+    public void visit(SuperExpr n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.SuperExpr, start);
+    }
+
+    @Override
+    public void visit(MethodCallExpr n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.MethodCallExpr, start);
+    }
+
+    @Override
+    public void visit(ObjectCreationExpr n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.ObjectCreationExpr, start);
+    }
+
+    @Override
+    public void visit(UnaryExpr n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.UnaryExpr, start);
+    }
+
+    @Override
+    public void visit(ConstructorDeclaration n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.ConstructorDeclaration, start);
+    }
+
+    @Override
+    public void visit(MethodDeclaration n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.MethodDeclaration, start);
+    }
+
+    @Override
+    public void visit(Parameter n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.Parameter, start);
+    }
+
+    @Override
+    public void visit(ExplicitConstructorInvocationStmt n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.ExplicitConstructorInvocationStmt, start);
+    }
+
+    @Override
+    public void visit(VariableDeclarationExpr n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.VariableDeclarationExpr, start);
+    }
+
+    @Override
+    public void visit(TypeDeclarationStmt n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.TypeDeclarationStmt, start);
+    }
+
+    @Override
+    public void visit(AssertStmt n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.AssertStmt, start);
+    }
+
+    @Override
+    public void visit(BlockStmt n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.BlockStmt, start);
+    }
+
+    @Override
+    public void visit(LabeledStmt n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.LabeledStmt, start);
+    }
+
+    @Override
+    public void visit(EmptyStmt n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.EmptyStmt, start);
+    }
+
+    @Override
+    public void visit(ExpressionStmt n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.ExpressionStmt, start);
+    }
+
+    @Override
+    public void visit(SwitchStmt n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.SwitchStmt, start);
+    }
+
+    @Override
+    public void visit(SwitchEntryStmt n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.SwitchEntryStmt, start);
+    }
+
+    @Override
+    public void visit(BreakStmt n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.BreakStmt, start);
+    }
+
+    @Override
+    public void visit(ReturnStmt n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.ReturnStmt, start);
+    }
+
+    @Override
+    public void visit(EnumDeclaration n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.EnumDeclaration, start);
+    }
+
+    @Override
+    public void visit(EnumConstantDeclaration n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.EnumConstantDeclaration, start);
+    }
+
+    @Override
+    public void visit(EmptyMemberDeclaration n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.EmptyMemberDeclaration, start);
+    }
+
+    @Override
+    public void visit(InitializerDeclaration n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.InitializerDeclaration, start);
+    }
+
+    @Override
+    public void visit(IfStmt n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.IfStmt, start);
+    }
+
+    @Override
+    public void visit(WhileStmt n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.WhileStmt, start);
+    }
+
+    @Override
+    public void visit(ContinueStmt n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.ContinueStmt, start);
+    }
+
+    @Override
+    public void visit(DoStmt n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.DoStmt, start);
+    }
+
+    @Override
+    public void visit(ForeachStmt n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.ForeachStmt, start);
+    }
+
+    @Override
+    public void visit(ForStmt n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.ForStmt, start);
+    }
+
+    @Override
+    public void visit(ThrowStmt n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.ThrowStmt, start);
+    }
+
+    @Override
+    public void visit(SynchronizedStmt n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.SynchronizedStmt, start);
+    }
+
+    @Override
+    public void visit(TryStmt n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.TryStmt, start);
+    }
+
+    @Override
+    public void visit(CatchClause n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.CatchClause, start);
+    }
+
+    @Override
+    public void visit(AnnotationDeclaration n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.AnnotationDeclaration, start);
+    }
+
+    @Override
+    public void visit(AnnotationMemberDeclaration n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.AnnotationMemberDeclaration, start);
+    }
+
+    @Override
+    public void visit(MarkerAnnotationExpr n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.MarkerAnnotationExpr, start);
+    }
+
+    @Override
+    public void visit(SingleMemberAnnotationExpr n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.SingleMemberAnnotationExpr, start);
+    }
+
+    @Override
+    public void visit(NormalAnnotationExpr n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.NormalAnnotationExpr, start);
+    }
+
+    @Override
+    public void visit(MemberValuePair n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.MemberValuePair, start);
+    }
+
+    @Override
+    public void visit(LineComment n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.LineComment, start);
+    }
+
+    @Override
+    public void visit(BlockComment n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.BlockComment, start);
+    }
+
+    @Override
+    public void visit(LambdaExpr n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.LambdaExpr, start);
+    }
+
+    @Override
+    public void visit(MethodReferenceExpr n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.MethodReferenceExpr, start);
+    }
+
+    @Override
+    public void visit(TypeExpr n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.TypeExpr, start);
+    }
+
+    @Override
+    public void visit(NodeList n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.NodeList, start);
+    }
+
+    @Override
+    public void visit(BadImportDeclaration n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.BadImportDeclaration, start);
+    }
+
+    @Override
+    public void visit(SingleStaticImportDeclaration n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.SingleStaticImportDeclaration, start);
+    }
+
+    @Override
+    public void visit(SingleTypeImportDeclaration n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.SingleTypeImportDeclaration, start);
+    }
+
+    @Override
+    public void visit(StaticImportOnDemandDeclaration n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.StaticImportOnDemandDeclaration, start);
+    }
+
+    @Override
+    public void visit(TypeImportOnDemandDeclaration n, Void arg) {
+        long start = this.enter();
+        super.visit(n, arg);
+        this.exit(RenderStats.Probe.TypeImportOnDemandDeclaration, start);
+    }
+}
@@ -0,0 +1,105 @@
+import Dom.ElementType;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.ConstructorDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.expr.AnnotationExpr;
+import com.github.javaparser.ast.type.ClassOrInterfaceType;
+import theme.KeywordEnum;
+
+/**
+ * Processor that reports every call to the timing stack of its {@link InstrumentedAstVisitor}.
+ *
+ * It wraps the whole processor chain, so the probes are recorded whichever decorators the configuration
+ * adds; everything it is handed goes on to the processor it wraps.
+ */
+public class InstrumentedProcessor extends Processor {
+    private final InstrumentedAstVisitor visitor;
+    private final Processor delegate;
+
+    public InstrumentedProcessor(InstrumentedAstVisitor visitor, Processor delegate) {
+        super(visitor, delegate.printer);
+        this.visitor = visitor;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void printKeyword(KeywordEnum keyword) {
+        delegate.printKeyword(keyword);
+    }
+
+    @Override
+    protected void compilationUnit(CompilationUnit unit) {
+        delegate.compilationUnit(unit);
+    }
+
+    @Override
+    protected void typeReference(ClassOrInterfaceType type) {
+        delegate.typeReference(type);
+    }
+
+    @Override
+    protected void open(ElementType type, Node node) {
+        delegate.open(type, node);
+    }
+
+    @Override
+    protected void close(ElementType type, Node node) {
+        delegate.close(type, node);
+    }
+
+    @Override
+    public void reset() {
+        delegate.reset();
+    }
+
+    @Override
+    public void printClassDeclaration(ClassOrInterfaceDeclaration node, Void arg) {
+        long start = this.visitor.enter();
+        super.printClassDeclaration(node, arg);
+        this.visitor.exit(RenderStats.Probe.printClassDeclaration, start);
+    }
+
+    @Override
+    public void printMethodDeclaration(MethodDeclaration node, Void arg) {
+        long start = this.visitor.enter();
+        super.printMethodDeclaration(node, arg);
+        this.visitor.exit(RenderStats.Probe.printMethodDeclaration, start);
+    }
+
+    @Override
+    public void printMethodCall(Node node, Void arg) {
+        long start = this.visitor.enter();
+        super.printMethodCall(node, arg);
+        this.visitor.exit(RenderStats.Probe.printMethodCall, start);
+    }
+
+    @Override
+    public void printAnnotation(AnnotationExpr node, Void arg) {
+        long start = this.visitor.enter();
+        super.printAnnotation(node, arg);
+        this.visitor.exit(RenderStats.Probe.printAnnotation, start);
+    }
+
+    @Override
+    public void printClassType(ClassOrInterfaceType node, Void arg) {
+        long start = this.visitor.enter();
+        super.printClassType(node, arg);
+        this.visitor.exit(RenderStats.Probe.printClassType, start);
+    }
+
+    @Override
+    public void printNewObjectCreation(ClassOrInterfaceType node, Void arg) {
+        long start = this.visitor.enter();
+        super.printNewObjectCreation(node, arg);
+        this.visitor.exit(RenderStats.Probe.printNewObjectCreation, start);
+    }
+
+    @Override
+    public void printConstructor(ConstructorDeclaration node, Void arg) {
+        long start = this.visitor.enter();
+        super.printConstructor(node, arg);
+        this.visitor.exit(RenderStats.Probe.printConstructor, start);
+    }
+}
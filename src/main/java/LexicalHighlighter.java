@@ -0,0 +1,325 @@
+import Dom.DomTemplate;
+import Dom.ElementType;
+import Dom.KeywordMarkup;
+import com.github.javaparser.ParseProblemException;
+import com.github.javaparser.ast.CompilationUnit;
+import theme.KeywordEnum;
+import theme.Theme;
+import theme.ThemeOutput;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Highlights source in a single pass over its chars, without parsing it, for files that do not parse
+ * or are too large to be worth an AST.
+ *
+ * Keywords get the same markup as {@link DomPrinter} and identifiers are classified into the same
+ * elements from their neighbours: a name after {@code class} is a declaration, a capitalised name is
+ * a type, a name before {@code (} is a call or, after a type, a declaration. Comments and literals are
+ * skipped over so nothing inside them is decorated. Unlike the visitor the source is not reformatted,
+ * and the classification is a heuristic, so the markup can differ from a parsed render in places.
+ *
+ * Not thread-safe; keep one highlighter per worker thread.
+ */
+public class LexicalHighlighter {
+    private static final KeywordEnum[][] KEYWORDS = new KeywordEnum[26][];
+
+    static {
+        List<List<KeywordEnum>> byFirst = new ArrayList<>();
+        for (int i = 0; i < 26; i++) {
+            byFirst.add(new ArrayList<>());
+        }
+        for (KeywordEnum keyword : KeywordEnum.values()) {
+            byFirst.get(keyword.getCodeRepresentation().charAt(0) - 'a').add(keyword);
+        }
+        for (int i = 0; i < 26; i++) {
+            KEYWORDS[i] = byFirst.get(i).toArray(new KeywordEnum[0]);
+        }
+    }
+
+    private static final int OTHER = 0;
+    private static final int IDENTIFIER = 1;
+    private static final int KEYWORD = 2;
+
+    private final AstConfiguration configuration;
+    private final SourcePrinter printer;
+    private DomTemplate[] templates;
+    private KeywordMarkup keywords;
+
+    private CharSequence source;
+    private int plain;
+    private int previous;
+    private KeywordEnum previousKeyword;
+    private char previousChar;
+
+    public LexicalHighlighter(AstConfiguration configuration) {
+        this.configuration = configuration;
+        this.printer = new SourcePrinter("", null, configuration.getBufferSize());
+    }
+
+    /**
+     * Parses {@code source} with {@code parser}, or returns null when {@code configuration} sends it to the
+     * lexer instead: when it is over the lexer threshold, or when it does not parse and fallback is on.
+     *
+     * @throws ParseProblemException when the source does not parse and fallback is off
+     */
+    public static CompilationUnit parse(CharSequence source, Supplier<CompilationUnit> parser, AstConfiguration configuration) {
+        if (source.length() > configuration.getLexerThreshold()) {
+            return null;
+        }
+        try {
+            return parser.get();
+        } catch (ParseProblemException e) {
+            if (configuration.isLexerFallback()) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    public String highlight(CharSequence source) {
+        this.render(source, null);
+        return this.printer.getSource();
+    }
+
+    /**
+     * Highlights {@code source} straight into {@code out}.
+     */
+    public void highlight(CharSequence source, Appendable out) {
+        this.render(source, out);
+        this.printer.flush();
+    }
+
+    private void render(CharSequence source, Appendable out) {
+        Theme theme = this.configuration.getTheme();
+        ThemeOutput themeOutput = this.configuration.getThemeOutput();
+        this.templates = DomPrinter.templates(this.configuration.getDom(), theme, themeOutput);
+        this.keywords = DomPrinter.keywords(this.configuration.getDom(), theme, themeOutput);
+        this.printer.reset(out, Integer.MAX_VALUE);
+
+        this.source = source;
+        this.plain = 0;
+        this.previous = OTHER;
+        this.previousKeyword = null;
+        this.previousChar = 0;
+
+        int length = source.length();
+        int i = 0;
+        while (i < length) {
+            char c = source.charAt(i);
+            if (Character.isWhitespace(c)) {
+                ++i;
+            } else if (c == '/' && i + 1 < length && source.charAt(i + 1) == '/') {
+                i = lineEnd(i + 2);
+            } else if (c == '/' && i + 1 < length && source.charAt(i + 1) == '*') {
+                i = commentEnd(i + 2);
+            } else if (c == '"' || c == '\'') {
+                i = quoteEnd(i + 1, c);
+                this.previous = OTHER;
+                this.previousChar = c;
+            } else if (Character.isDigit(c) || c == '.' && i + 1 < length && Character.isDigit(source.charAt(i + 1))) {
+                i = numberEnd(i);
+                this.previous = OTHER;
+                this.previousChar = '0';
+            } else if (c == '@' && i + 1 < length && Character.isJavaIdentifierStart(nextSignificant(i + 1))) {
+                i = annotation(i);
+            } else if (Character.isJavaIdentifierStart(c)) {
+                i = word(i);
+            } else {
+                ++i;
+                this.previous = OTHER;
+                this.previousChar = c;
+            }
+        }
+        this.printer.print(source, this.plain, length);
+        this.source = null;
+    }
+
+    private int word(int start) {
+        int end = identifierEnd(start);
+        KeywordEnum keyword = keyword(start, end);
+        if (keyword != null) {
+            this.printer.print(this.source, this.plain, start);
+            this.printer.print(this.keywords.get(keyword));
+            this.plain = end;
+            this.previous = KEYWORD;
+            this.previousKeyword = keyword;
+            return end;
+        }
+
+        ElementType element = classify(start, end);
+        if (element != null) {
+            decorate(element, start, end);
+        }
+        this.previous = IDENTIFIER;
+        return end;
+    }
+
+    private ElementType classify(int start, int end) {
+        char next = nextSignificant(end);
+        if (this.previous == KEYWORD) {
+            switch (this.previousKeyword) {
+                case CLASS:
+                case INTERFACE:
+                case ENUM:
+                    return ElementType.CLASS_DECLARE;
+                case NEW:
+                    return next == '[' ? null : ElementType.NEW;
+                default:
+                    break;
+            }
+        }
+
+        if (next == '(') {
+            if (this.previous == IDENTIFIER || this.previous == KEYWORD && this.previousKeyword == KeywordEnum.VOID
+                    || this.previous == OTHER && (this.previousChar == '>' || this.previousChar == ']')) {
+                return ElementType.METHOD_DECLARE;
+            }
+            if (this.previous == KEYWORD && this.previousKeyword.ordinal() <= KeywordEnum.STRICTFP.ordinal()
+                    && Character.isUpperCase(this.source.charAt(start))) {
+                return ElementType.CONSTRUCTOR;
+            }
+            return ElementType.METHOD_CALL;
+        }
+
+        if (isTypeName(start, end) && !Processor.isBlack(this.source, start, end)) {
+            return ElementType.CLASS;
+        }
+        return null;
+    }
+
+    /**
+     * A capitalised name with at least one lower case letter, so constants like MAX_VALUE are left alone.
+     */
+    private boolean isTypeName(int start, int end) {
+        if (!Character.isUpperCase(this.source.charAt(start))) {
+            return false;
+        }
+        for (int i = start + 1; i < end; i++) {
+            if (Character.isLowerCase(this.source.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int annotation(int start) {
+        int end = identifierEnd(skipWhitespace(start + 1));
+        if (keyword(skipWhitespace(start + 1), end) == KeywordEnum.INTERFACE) {
+            this.previous = OTHER;
+            this.previousChar = '@';
+            return start + 1;
+        }
+        while (end + 1 < this.source.length() && this.source.charAt(end) == '.'
+                && Character.isJavaIdentifierStart(this.source.charAt(end + 1))) {
+            end = identifierEnd(end + 1);
+        }
+        decorate(ElementType.USE_ANNOTATION, start, end);
+        this.previous = OTHER;
+        this.previousChar = '@';
+        return end;
+    }
+
+    private void decorate(ElementType element, int start, int end) {
+        DomTemplate template = this.templates[element.ordinal()];
+        this.printer.print(this.source, this.plain, start);
+        this.printer.print(template.getOpen());
+        this.printer.print(this.source, start, end);
+        this.printer.print(template.getClose());
+        this.plain = end;
+    }
+
+    private KeywordEnum keyword(int start, int end) {
+        char first = this.source.charAt(start);
+        if (first < 'a' || first > 'z') {
+            return null;
+        }
+        for (KeywordEnum keyword : KEYWORDS[first - 'a']) {
+            String text = keyword.getCodeRepresentation();
+            if (text.length() == end - start && Processor.regionMatches(this.source, start, text)) {
+                return keyword;
+            }
+        }
+        return null;
+    }
+
+    private int identifierEnd(int i) {
+        while (i < this.source.length() && Character.isJavaIdentifierPart(this.source.charAt(i))) {
+            ++i;
+        }
+        return i;
+    }
+
+    private int skipWhitespace(int i) {
+        while (i < this.source.length() && Character.isWhitespace(this.source.charAt(i))) {
+            ++i;
+        }
+        return i;
+    }
+
+    private char nextSignificant(int i) {
+        i = skipWhitespace(i);
+        return i < this.source.length() ? this.source.charAt(i) : 0;
+    }
+
+    private int lineEnd(int i) {
+        while (i < this.source.length() && this.source.charAt(i) != '\n') {
+            ++i;
+        }
+        return i;
+    }
+
+    private int commentEnd(int i) {
+        int length = this.source.length();
+        while (i < length) {
+            if (this.source.charAt(i) == '*' && i + 1 < length && this.source.charAt(i + 1) == '/') {
+                return i + 2;
+            }
+            ++i;
+        }
+        return length;
+    }
+
+    /**
+     * End of a string or char literal. An unterminated one ends at the end of its line.
+     */
+    private int quoteEnd(int i, char quote) {
+        int length = this.source.length();
+        while (i < length) {
+            char c = this.source.charAt(i);
+            if (c == '\\') {
+                i += 2;
+            } else if (c == quote) {
+                return i + 1;
+            } else if (c == '\n') {
+                return i;
+            } else {
+                ++i;
+            }
+        }
+        return length;
+    }
+
+    private int numberEnd(int i) {
+        int length = this.source.length();
+        boolean hex = i + 1 < length && this.source.charAt(i) == '0'
+                && (this.source.charAt(i + 1) == 'x' || this.source.charAt(i + 1) == 'X');
+        while (i < length) {
+            char c = this.source.charAt(i);
+            if (Character.isLetterOrDigit(c) || c == '_' || c == '.') {
+                ++i;
+            } else if ((c == '+' || c == '-') && isExponent(this.source.charAt(i - 1), hex)) {
+                ++i;
+            } else {
+                break;
+            }
+        }
+        return i;
+    }
+
+    private static boolean isExponent(char c, boolean hex) {
+        return hex ? c == 'p' || c == 'P' : c == 'e' || c == 'E';
+    }
+}
@@ -0,0 +1,172 @@
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.Position;
+import com.github.javaparser.Range;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads source files through a memory mapping, decoding them into one char buffer reused across files.
+ *
+ * No byte[] or String copy of the file is made: the parser reads the decoded chars through a Reader,
+ * and text can be sliced out of them as views. Not thread-safe; keep one reader per worker thread.
+ */
+public class MappedSourceReader {
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private CharBuffer chars = CharBuffer.allocate(0);
+
+    /**
+     * Maps and decodes {@code file}. The returned source is only valid until the next call.
+     */
+    public MappedSource read(Path file) throws IOException {
+        MappedByteBuffer bytes;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + " is too large to map: " + channel.size() + " bytes");
+            }
+            bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        int capacity = (int) Math.ceil(bytes.remaining() * (double) this.decoder.maxCharsPerByte());
+        if (this.chars.capacity() < capacity) {
+            this.chars = CharBuffer.allocate(capacity);
+        }
+        this.chars.clear();
+
+        this.decoder.reset();
+        CoderResult result = this.decoder.decode(bytes.duplicate(), this.chars, true);
+        if (result.isUnderflow()) {
+            result = this.decoder.flush(this.chars);
+        }
+        if (result.isOverflow()) {
+            throw new IOException("decoded " + file + " does not fit in " + capacity + " chars");
+        }
+        if (result.isError()) {
+            try {
+                result.throwException();
+            } catch (CharacterCodingException e) {
+                throw new IOException("cannot decode " + file, e);
+            }
+        }
+        this.chars.flip();
+
+        if (this.chars.hasRemaining() && this.chars.get(0) == '\uFEFF') {
+            this.chars.position(1);
+        }
+        return new MappedSource(bytes, this.chars.slice());
+    }
+
+    public static class MappedSource {
+        private final MappedByteBuffer bytes;
+        private final CharBuffer chars;
+        private int[] lineStarts;
+
+        MappedSource(MappedByteBuffer bytes, CharBuffer chars) {
+            this.bytes = bytes;
+            this.chars = chars;
+        }
+
+        /**
+         * The mapped file, positioned at its first byte.
+         */
+        public MappedByteBuffer getBytes() {
+            return this.bytes;
+        }
+
+        public int size() {
+            return this.bytes.capacity();
+        }
+
+        public CharSequence getChars() {
+            return this.chars.duplicate();
+        }
+
+        public Reader reader() {
+            return new CharBufferReader(this.chars.duplicate());
+        }
+
+        public CompilationUnit parse() {
+            return JavaParser.parse(reader());
+        }
+
+        /**
+         * Text between two char offsets, as a view over the decoded buffer.
+         */
+        public CharSequence slice(int start, int end) {
+            return this.chars.subSequence(start, end);
+        }
+
+        /**
+         * Source text of a parsed node, as a view over the decoded buffer.
+         */
+        public CharSequence slice(Node node) {
+            Range range = node.getRange().orElseThrow(() -> new IllegalArgumentException(node + " has no range"));
+            return slice(offset(range.begin), offset(range.end) + 1);
+        }
+
+        private int offset(Position position) {
+            if (this.lineStarts == null) {
+                this.lineStarts = lineStarts(this.chars);
+            }
+            return this.lineStarts[position.line - 1] + position.column - 1;
+        }
+
+        private static int[] lineStarts(CharBuffer chars) {
+            int count = 1;
+            for (int i = 0; i < chars.limit(); i++) {
+                if (chars.get(i) == '\n') {
+                    ++count;
+                }
+            }
+            int[] starts = new int[count];
+            int line = 1;
+            for (int i = 0; i < chars.limit(); i++) {
+                if (chars.get(i) == '\n') {
+                    starts[line++] = i + 1;
+                }
+            }
+            return starts;
+        }
+    }
+
+    private static class CharBufferReader extends Reader {
+        private final CharBuffer chars;
+
+        CharBufferReader(CharBuffer chars) {
+            this.chars = chars;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            if (!this.chars.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(length, this.chars.remaining());
+            this.chars.get(buffer, offset, n);
+            return n;
+        }
+
+        @Override
+        public int read() {
+            return this.chars.hasRemaining() ? this.chars.get() : -1;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,106 @@
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.comments.Comment;
+import com.github.javaparser.utils.PositionUtils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Orphan comments of a tree, resolved once per tree instead of once per visited node.
+ *
+ * The tree is walked once when the index is built. Every node's children are sorted by position a
+ * single time, and two lookups are kept: the comments between a child and its previous non-comment
+ * sibling, and the comments after a node's last non-comment child. After that each lookup is a single
+ * map access. Nodes are keyed by identity, since Node.hashCode walks the subtree.
+ */
+public class OrphanCommentIndex {
+    private final Node root;
+    private final Map<Node, List<Comment>> before = new IdentityHashMap<>();
+    private final Map<Node, List<Comment>> ending = new IdentityHashMap<>();
+
+    private OrphanCommentIndex(Node root) {
+        this.root = root;
+    }
+
+    public static OrphanCommentIndex build(Node root) {
+        OrphanCommentIndex index = new OrphanCommentIndex(root);
+        Deque<Node> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+            List<Node> children = node.getChildNodes();
+            if (!children.isEmpty()) {
+                index.index(node, children);
+                for (Node child : children) {
+                    pending.push(child);
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Returns the topmost ancestor of {@code node}, the node an index for it has to be built from.
+     */
+    public static Node rootOf(Node node) {
+        Node root = node;
+        while (root.getParentNode().isPresent()) {
+            root = root.getParentNode().get();
+        }
+        return root;
+    }
+
+    private void index(Node node, List<Node> children) {
+        List<Node> everything = new ArrayList<>(children);
+        PositionUtils.sortByBeginPosition(everything);
+
+        int run = 0;
+        for (int i = 0; i < everything.size(); i++) {
+            Node child = everything.get(i);
+            if (child instanceof Comment) {
+                ++run;
+            } else {
+                if (run > 0) {
+                    this.before.put(child, comments(everything, i - run, i));
+                }
+                run = 0;
+            }
+        }
+        if (run > 0) {
+            this.ending.put(node, comments(everything, everything.size() - run, everything.size()));
+        }
+    }
+
+    private static List<Comment> comments(List<Node> nodes, int from, int to) {
+        List<Comment> comments = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            comments.add((Comment) nodes.get(i));
+        }
+        return comments;
+    }
+
+    public Node getRoot() {
+        return this.root;
+    }
+
+    /**
+     * Comments printed before {@code node}: those between it and its previous non-comment sibling.
+     */
+    public List<Comment> before(Node node) {
+        List<Comment> comments = this.before.get(node);
+        return comments == null ? Collections.<Comment>emptyList() : comments;
+    }
+
+    /**
+     * Comments printed at the end of {@code node}: those after its last non-comment child.
+     */
+    public List<Comment> ending(Node node) {
+        List<Comment> comments = this.ending.get(node);
+        return comments == null ? Collections.<Comment>emptyList() : comments;
+    }
+}
@@ -1,27 +1,129 @@
+import Dom.ElementType;
+import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.Node;
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
 import com.github.javaparser.ast.body.ConstructorDeclaration;
 import com.github.javaparser.ast.body.MethodDeclaration;
 import com.github.javaparser.ast.expr.AnnotationExpr;
 import com.github.javaparser.ast.type.ClassOrInterfaceType;
+import theme.KeywordEnum;
+
+import java.util.Arrays;
+import java.util.List;
 
 /**
+ * Decides how keywords and the constructs of {@link ElementType} are written, while the visitor
+ * keeps control of the traversal. Subclasses only supply what goes around each element.
+ *
  * Created by bresai on 2016/12/20.
  */
 public abstract class Processor {
+    protected final AstVisitor visitor;
+    protected final SourcePrinter printer;
+    private static final List<String> blackList =
+            Arrays.asList("Map", "List", "ArrayList", "LinkedList");
+
+    protected Processor(AstVisitor visitor) {
+        this(visitor, visitor.getPrinter());
+    }
+
+    /**
+     * @param printer where this processor writes, when it is not the visitor's own printer
+     */
+    protected Processor(AstVisitor visitor, SourcePrinter printer) {
+        this.visitor = visitor;
+        this.printer = printer;
+    }
+
+    private boolean isBlack(String arg) {
+        return blackList.contains(arg);
+    }
+
+    /**
+     * Whether the type name between {@code start} and {@code end} is left undecorated.
+     */
+    static boolean isBlack(CharSequence source, int start, int end) {
+        for (String name : blackList) {
+            if (name.length() == end - start && regionMatches(source, start, name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static boolean regionMatches(CharSequence source, int start, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (source.charAt(start + i) != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public abstract void printKeyword(KeywordEnum keyword);
+
+    /**
+     * Drops any state kept from the previous render. Called by {@link AstVisitor#reset}.
+     */
+    public void reset() {
+    }
+
+    /**
+     * Called when the visitor starts on a compilation unit, before anything in it is printed.
+     * Processors that wrap others pass it on.
+     */
+    protected void compilationUnit(CompilationUnit unit) {
+    }
+
+    /**
+     * Called with the type whose name the next {@link ElementType#CLASS} or {@link ElementType#NEW} element
+     * holds, which the name node itself cannot lead back to. Processors that wrap others pass it on.
+     */
+    protected void typeReference(ClassOrInterfaceType type) {
+    }
+
+    protected abstract void open(ElementType type, Node node);
+
+    protected abstract void close(ElementType type, Node node);
+
+    protected void printElement(Node node, Void arg, ElementType type) {
+        open(type, node);
+        node.accept(visitor, arg);
+        close(type, node);
+    }
 
-    public abstract void printClassDeclaration(ClassOrInterfaceDeclaration node, Void arg);
+    public void printClassDeclaration(ClassOrInterfaceDeclaration node, Void arg) {
+        printElement(node.getName(), arg, ElementType.CLASS_DECLARE);
+    }
 
-    public abstract void printMethodDeclaration(MethodDeclaration node, Void arg);
+    public void printMethodDeclaration(MethodDeclaration node, Void arg) {
+        printElement(node.getName(), arg, ElementType.METHOD_DECLARE);
+    }
 
-    public abstract void printMethodCall(Node node, Void arg);
+    public void printMethodCall(Node node, Void arg) {
+        printElement(node, arg, ElementType.METHOD_CALL);
+    }
 
-    public abstract void printAnnotation(AnnotationExpr node, Void arg);
+    public void printAnnotation(AnnotationExpr node, Void arg) {
+        printElement(node, arg, ElementType.USE_ANNOTATION);
+    }
 
-    public abstract void printClassType(ClassOrInterfaceType node, Void arg);
+    public void printClassType(ClassOrInterfaceType node, Void arg) {
+        if (isBlack(node.getName().getIdentifier())){
+            node.getName().accept(visitor, arg);
+            return;
+        }
+        typeReference(node);
+        printElement(node.getName(), arg, ElementType.CLASS);
+    }
 
-    public abstract void printNewObjectCreation(ClassOrInterfaceType node, Void arg);
+    public void printNewObjectCreation(ClassOrInterfaceType node, Void arg) {
+        typeReference(node);
+        printElement(node.getName(), arg, ElementType.NEW);
+    }
 
-    public abstract void printConstructor(ConstructorDeclaration node, Void arg);
+    public void printConstructor(ConstructorDeclaration node, Void arg){
+        printElement(node.getName(), arg, ElementType.CONSTRUCTOR);
+    }
 
 }
@@ -0,0 +1,187 @@
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Content-addressed cache of rendered sources.
+ *
+ * The key is a SHA-256 of the renderer version, the configuration's {@link AstConfiguration#getCacheKey()}
+ * and the source bytes. Results live in an LRU bounded by total bytes, and optionally in a directory of
+ * result files that are memory-mapped when read back. A hit never parses or visits the source.
+ * Each call works from one {@link AstConfiguration#snapshot()}, so a theme switched while it runs cannot
+ * file the output under the other theme's key.
+ */
+public class RenderCache {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final AstConfiguration configuration;
+    private final long maxBytes;
+    private final Path directory;
+
+    private final LinkedHashMap<String, ByteBuffer> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long size = 0;
+
+    private final LongAdder memoryHits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public RenderCache(AstConfiguration configuration, long maxBytes) {
+        this(configuration, maxBytes, null);
+    }
+
+    /**
+     * @param directory where result files are kept, or null for a memory-only cache
+     */
+    public RenderCache(AstConfiguration configuration, long maxBytes, Path directory) {
+        this.configuration = configuration;
+        this.maxBytes = maxBytes;
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the rendered html of {@code source} as UTF-8 bytes, in a read-only buffer.
+     */
+    public ByteBuffer render(byte[] source) {
+        AstConfiguration configuration = this.configuration.snapshot();
+        String key = key(configuration, source);
+
+        ByteBuffer cached = lookup(key);
+        if (cached != null) {
+            memoryHits.increment();
+            return cached.duplicate();
+        }
+
+        if (directory != null) {
+            cached = load(key);
+            if (cached != null) {
+                diskHits.increment();
+                store(key, cached);
+                return cached.duplicate();
+            }
+        }
+
+        misses.increment();
+        String text = new String(source, StandardCharsets.UTF_8);
+        CompilationUnit cu = LexicalHighlighter.parse(text, () -> JavaParser.parse(text), configuration);
+        String html;
+        if (cu == null) {
+            html = new LexicalHighlighter(configuration).highlight(text);
+        } else {
+            AstVisitor visitor = AstVisitor.create(configuration, null);
+            cu.accept(visitor, null);
+            html = visitor.getSource();
+        }
+        ByteBuffer rendered = ByteBuffer.wrap(html.getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer();
+
+        if (directory != null) {
+            save(key, rendered.duplicate());
+        }
+        store(key, rendered);
+        return rendered.duplicate();
+    }
+
+    private static String key(AstConfiguration configuration, byte[] source) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update((AstVisitor.RENDERER_VERSION + ";" + configuration.getCacheKey() + ";")
+                .getBytes(StandardCharsets.UTF_8));
+        byte[] hash = digest.digest(source);
+
+        char[] chars = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            chars[i * 2] = HEX[(hash[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = HEX[hash[i] & 0xf];
+        }
+        return new String(chars);
+    }
+
+    private synchronized ByteBuffer lookup(String key) {
+        return entries.get(key);
+    }
+
+    private synchronized void store(String key, ByteBuffer value) {
+        if (value.remaining() > maxBytes) {
+            return;
+        }
+
+        ByteBuffer previous = entries.put(key, value);
+        size += value.remaining();
+        if (previous != null) {
+            size -= previous.remaining();
+        }
+
+        Iterator<Map.Entry<String, ByteBuffer>> i = entries.entrySet().iterator();
+        while (size > maxBytes && i.hasNext()) {
+            size -= i.next().getValue().remaining();
+            i.remove();
+        }
+    }
+
+    private Path file(String key) {
+        return directory.resolve(key.substring(0, 2)).resolve(key + ".html");
+    }
+
+    private ByteBuffer load(String key) {
+        Path file = file(key);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void save(String key, ByteBuffer rendered) {
+        Path file = file(key);
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = Files.createTempFile(file.getParent(), key, ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (rendered.hasRemaining()) {
+                    channel.write(rendered);
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public long getMemoryHits() {
+        return memoryHits.sum();
+    }
+
+    public long getDiskHits() {
+        return diskHits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+}
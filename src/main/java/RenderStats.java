@@ -0,0 +1,257 @@
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Invocation counts and cumulative nanos per AstVisitor.visit overload and per processor call.
+ *
+ * Filled by {@link InstrumentedAstVisitor}, which {@link AstVisitor#create} only builds when
+ * {@link AstConfiguration#getRenderStats()} is set; plain visitors never touch it. One instance
+ * can be shared by concurrent renders and published over JMX with {@link #register(String)}.
+ */
+public class RenderStats implements RenderStatsMBean {
+    public enum Probe {
+        CompilationUnit,
+        PackageDeclaration,
+        NameExpr,
+        Name,
+        SimpleName,
+        ClassOrInterfaceDeclaration,
+        JavadocComment,
+        ClassOrInterfaceType,
+        TypeParameter,
+        PrimitiveType,
+        ArrayType,
+        ArrayCreationLevel,
+        IntersectionType,
+        UnionType,
+        WildcardType,
+        UnknownType,
+        FieldDeclaration,
+        VariableDeclarator,
+        ArrayInitializerExpr,
+        VoidType,
+        ArrayAccessExpr,
+        ArrayCreationExpr,
+        AssignExpr,
+        BinaryExpr,
+        CastExpr,
+        ClassExpr,
+        ConditionalExpr,
+        EnclosedExpr,
+        FieldAccessExpr,
+        InstanceOfExpr,
+        CharLiteralExpr,
+        DoubleLiteralExpr,
+        IntegerLiteralExpr,
+        LongLiteralExpr,
+        StringLiteralExpr,
+        BooleanLiteralExpr,
+        NullLiteralExpr,
+        ThisExpr,
+        SuperExpr,
+        MethodCallExpr,
+        ObjectCreationExpr,
+        UnaryExpr,
+        ConstructorDeclaration,
+        MethodDeclaration,
+        Parameter,
+        ExplicitConstructorInvocationStmt,
+        VariableDeclarationExpr,
+        TypeDeclarationStmt,
+        AssertStmt,
+        BlockStmt,
+        LabeledStmt,
+        EmptyStmt,
+        ExpressionStmt,
+        SwitchStmt,
+        SwitchEntryStmt,
+        BreakStmt,
+        ReturnStmt,
+        EnumDeclaration,
+        EnumConstantDeclaration,
+        EmptyMemberDeclaration,
+        InitializerDeclaration,
+        IfStmt,
+        WhileStmt,
+        ContinueStmt,
+        DoStmt,
+        ForeachStmt,
+        ForStmt,
+        ThrowStmt,
+        SynchronizedStmt,
+        TryStmt,
+        CatchClause,
+        AnnotationDeclaration,
+        AnnotationMemberDeclaration,
+        MarkerAnnotationExpr,
+        SingleMemberAnnotationExpr,
+        NormalAnnotationExpr,
+        MemberValuePair,
+        LineComment,
+        BlockComment,
+        LambdaExpr,
+        MethodReferenceExpr,
+        TypeExpr,
+        NodeList,
+        BadImportDeclaration,
+        SingleStaticImportDeclaration,
+        SingleTypeImportDeclaration,
+        StaticImportOnDemandDeclaration,
+        TypeImportOnDemandDeclaration,
+        printClassDeclaration,
+        printMethodDeclaration,
+        printMethodCall,
+        printAnnotation,
+        printClassType,
+        printNewObjectCreation,
+        printConstructor;
+
+        public String label() {
+            return Character.isLowerCase(name().charAt(0)) ? "DomPrinter." + name() : "visit(" + name() + ")";
+        }
+    }
+
+    private final LongAdder[] counts = adders();
+    private final LongAdder[] nanos = adders();
+    private final LongAdder[] selfNanos = adders();
+
+    private static LongAdder[] adders() {
+        LongAdder[] adders = new LongAdder[Probe.values().length];
+        for (int i = 0; i < adders.length; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    /**
+     * @param nanos time spent in the call, including nested calls
+     * @param selfNanos time spent in the call minus the nested calls that were recorded
+     */
+    void record(Probe probe, long nanos, long selfNanos) {
+        int i = probe.ordinal();
+        this.counts[i].increment();
+        this.nanos[i].add(nanos);
+        this.selfNanos[i].add(selfNanos);
+    }
+
+    public long getCount(Probe probe) {
+        return this.counts[probe.ordinal()].sum();
+    }
+
+    public long getNanos(Probe probe) {
+        return this.nanos[probe.ordinal()].sum();
+    }
+
+    public long getSelfNanos(Probe probe) {
+        return this.selfNanos[probe.ordinal()].sum();
+    }
+
+    /**
+     * Every probe that has been hit, hottest first by self time.
+     */
+    public List<Entry> snapshot() {
+        List<Entry> entries = new ArrayList<>();
+        for (Probe probe : Probe.values()) {
+            long count = getCount(probe);
+            if (count > 0) {
+                entries.add(new Entry(probe, count, getNanos(probe), getSelfNanos(probe)));
+            }
+        }
+        entries.sort(Comparator.comparingLong(Entry::getSelfNanos).reversed());
+        return entries;
+    }
+
+    public void reset() {
+        for (int i = 0; i < this.counts.length; i++) {
+            this.counts[i].reset();
+            this.nanos[i].reset();
+            this.selfNanos[i].reset();
+        }
+    }
+
+    /**
+     * Publishes these stats on the platform MBean server, e.g. as {@code astcode:type=RenderStats}.
+     */
+    public void register(String objectName) throws JMException {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(objectName));
+        } catch (InstanceAlreadyExistsException e) {
+            throw new IllegalStateException(objectName + " is already registered", e);
+        }
+    }
+
+    @Override
+    public String[] getHotSpots() {
+        List<Entry> entries = snapshot();
+        String[] lines = new String[entries.size()];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = entries.get(i).toString();
+        }
+        return lines;
+    }
+
+    @Override
+    public long getTotalCount() {
+        long total = 0;
+        for (LongAdder count : this.counts) {
+            total += count.sum();
+        }
+        return total;
+    }
+
+    @Override
+    public long getCount(String probe) {
+        return getCount(Probe.valueOf(probe));
+    }
+
+    @Override
+    public long getNanos(String probe) {
+        return getNanos(Probe.valueOf(probe));
+    }
+
+    @Override
+    public long getSelfNanos(String probe) {
+        return getSelfNanos(Probe.valueOf(probe));
+    }
+
+    public static class Entry {
+        private final Probe probe;
+        private final long count;
+        private final long nanos;
+        private final long selfNanos;
+
+        Entry(Probe probe, long count, long nanos, long selfNanos) {
+            this.probe = probe;
+            this.count = count;
+            this.nanos = nanos;
+            this.selfNanos = selfNanos;
+        }
+
+        public Probe getProbe() {
+            return probe;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public long getSelfNanos() {
+            return selfNanos;
+        }
+
+        public String toString() {
+            return String.format("%s: %d calls, %d us total, %d us self",
+                    probe.label(), count, nanos / 1000, selfNanos / 1000);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+/**
+ * JMX view of {@link RenderStats}. Probe names are the node class names, e.g. "MethodCallExpr",
+ * and the DomPrinter method names, e.g. "printMethodCall".
+ */
+public interface RenderStatsMBean {
+    String[] getHotSpots();
+
+    long getTotalCount();
+
+    long getCount(String probe);
+
+    long getNanos(String probe);
+
+    long getSelfNanos(String probe);
+
+    void reset();
+}
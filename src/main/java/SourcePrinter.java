@@ -1,16 +1,77 @@
 import com.github.javaparser.utils.Utils;
 
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
 /**
  * Created by bresai on 2016/12/20.
  */
 public class SourcePrinter {
     private final String indentation;
+    private final IndentStyle indentStyle;
+    private final String domType;
+    private char[][] indents = new char[8][];
     private int level = 0;
     private boolean indented = false;
-    private final StringBuilder buf = new StringBuilder();
+    private StringBuilder buf = new StringBuilder();
+
+    /**
+     * Streaming mode: when set, the buffer is drained into this sink every time it
+     * reaches {@link #bufferLimit} chars, so the whole document is never held in memory.
+     */
+    private Appendable out;
+    private final int bufferLimit;
+    private char[] chunk;
+    private long flushed = 0;
+
+    /**
+     * Chunked mode: when set, everything printed is handed to this consumer at each {@link #endChunk()}
+     * instead of being kept, so only the current chunk is ever held in memory.
+     */
+    private Consumer<CharSequence> chunkConsumer;
 
     SourcePrinter(String indentation) {
+        this(indentation, null, 8192);
+    }
+
+    SourcePrinter(String indentation, Appendable out, int bufferLimit) {
+        this(indentation, IndentStyle.LITERAL, null, out, bufferLimit);
+    }
+
+    /**
+     * @param domType tag used by {@link IndentStyle#ELEMENT}
+     */
+    SourcePrinter(String indentation, IndentStyle indentStyle, String domType, Appendable out, int bufferLimit) {
         this.indentation = indentation;
+        this.indentStyle = indentStyle;
+        this.domType = domType;
+        this.out = out;
+        this.bufferLimit = bufferLimit;
+    }
+
+    /**
+     * Clears everything printed so far so the printer can be used for another document.
+     *
+     * @param out the sink to stream the next document to, or null to keep it in memory
+     * @param retainedCapacity the largest buffer worth keeping; a bigger one is replaced by one of this size
+     */
+    void reset(Appendable out, int retainedCapacity) {
+        if (out != null && this.chunkConsumer != null) {
+            throw new IllegalStateException("a chunked printer cannot stream to a sink");
+        }
+        this.out = out;
+        this.level = 0;
+        this.indented = false;
+        this.flushed = 0;
+        if (this.buf.capacity() > retainedCapacity) {
+            this.buf = new StringBuilder(retainedCapacity);
+        } else {
+            this.buf.setLength(0);
+        }
     }
 
     SourcePrinter indent() {
@@ -23,11 +84,22 @@ public class SourcePrinter {
         return this;
     }
 
+    /**
+     * Appends the prefix of the current level in one go. Prefixes are built the first time a level is reached.
+     */
     private void makeIndent() {
-        for (int i = 0; i < this.level; ++i) {
-            this.buf.append(this.indentation);
+        if (this.level <= 0) {
+            return;
         }
-
+        if (this.level >= this.indents.length) {
+            this.indents = Arrays.copyOf(this.indents, Math.max(this.level + 1, this.indents.length * 2));
+        }
+        char[] indent = this.indents[this.level];
+        if (indent == null) {
+            indent = this.indentStyle.prefix(this.level, this.indentation, this.domType).toCharArray();
+            this.indents[this.level] = indent;
+        }
+        this.buf.append(indent);
     }
 
     SourcePrinter print(String arg) {
@@ -37,6 +109,38 @@ public class SourcePrinter {
         }
 
         this.buf.append(arg);
+        this.drainIfFull();
+        return this;
+    }
+
+    /**
+     * Prints a ready-made fragment, such as a {@link Dom.DomTemplate} tag, without copying it first.
+     */
+    SourcePrinter print(char[] arg) {
+        if (!this.indented) {
+            this.makeIndent();
+            this.indented = true;
+        }
+
+        this.buf.append(arg);
+        this.drainIfFull();
+        return this;
+    }
+
+    /**
+     * Prints part of a larger text without copying it to a String first.
+     */
+    SourcePrinter print(CharSequence arg, int start, int end) {
+        if (start == end) {
+            return this;
+        }
+        if (!this.indented) {
+            this.makeIndent();
+            this.indented = true;
+        }
+
+        this.buf.append(arg, start, end);
+        this.drainIfFull();
         return this;
     }
 
@@ -49,10 +153,113 @@ public class SourcePrinter {
     SourcePrinter println() {
         this.buf.append(Utils.EOL);
         this.indented = false;
+        this.drainIfFull();
         return this;
     }
 
+    void setChunkConsumer(Consumer<CharSequence> chunkConsumer) {
+        if (chunkConsumer != null && this.out != null) {
+            throw new IllegalStateException("a streaming printer cannot be chunked");
+        }
+        this.chunkConsumer = chunkConsumer;
+    }
+
+    /**
+     * Hands everything printed since the previous chunk to the chunk consumer, if there is one.
+     * The consumer must copy what it keeps: the buffer is cleared as soon as it returns.
+     */
+    void endChunk() {
+        if (this.chunkConsumer == null || this.buf.length() == 0) {
+            return;
+        }
+
+        int length = this.buf.length();
+        this.chunkConsumer.accept(this.buf);
+        this.flushed += length;
+        this.buf.setLength(0);
+    }
+
+    /**
+     * Number of chars printed so far, including those already written to the sink.
+     */
+    public long position() {
+        return this.flushed + this.buf.length();
+    }
+
+    /**
+     * Position the next printed char will land at, writing the pending indentation first.
+     */
+    long contentPosition() {
+        if (!this.indented) {
+            this.makeIndent();
+            this.indented = true;
+        }
+        return this.position();
+    }
+
+    public boolean isStreaming() {
+        return this.out != null;
+    }
+
+    private void drainIfFull() {
+        if (this.out != null && this.buf.length() >= this.bufferLimit) {
+            this.drain();
+        }
+    }
+
+    private void drain() {
+        int length = this.buf.length();
+        if (length == 0) {
+            return;
+        }
+
+        try {
+            if (this.out instanceof Writer) {
+                if (this.chunk == null || this.chunk.length < length) {
+                    this.chunk = new char[Math.max(length, this.bufferLimit)];
+                }
+                this.buf.getChars(0, length, this.chunk, 0);
+                ((Writer) this.out).write(this.chunk, 0, length);
+            } else {
+                this.out.append(this.buf);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.flushed += length;
+        this.buf.setLength(0);
+    }
+
+    /**
+     * Writes everything printed so far to the sink and flushes it, or hands it to the chunk consumer
+     * as a last chunk. Does nothing when the printer is neither streaming nor chunked.
+     */
+    public void flush() {
+        if (this.chunkConsumer != null) {
+            this.endChunk();
+            return;
+        }
+        if (this.out == null) {
+            return;
+        }
+
+        this.drain();
+        if (this.out instanceof Flushable) {
+            try {
+                ((Flushable) this.out).flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
     public String getSource() {
+        if (this.out != null) {
+            throw new IllegalStateException("source has been streamed to " + this.out.getClass().getName());
+        }
+        if (this.flushed > 0) {
+            throw new IllegalStateException("source has been handed out in chunks");
+        }
         return this.buf.toString();
     }
 
@@ -0,0 +1,124 @@
+import com.github.javaparser.ast.CompilationUnit;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reports time to first render of a fresh JVM with and without a class data sharing archive and warm-up.
+ *
+ * Run with {@code java -cp target/cds/astcode.jar StartupBenchmark [archive] [file] [runs] [warm-up renders]}.
+ * When the archive does not exist it is dumped by a training run first. Every run starts a new JVM that
+ * optionally warms up, reports that it is ready, then renders the file once. The medians printed are the
+ * time until ready, the first render measured inside the JVM, and the time from launch until it is done.
+ */
+public class StartupBenchmark {
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length > 2 && "--probe".equals(args[0])) {
+            probe(args[1], Integer.parseInt(args[2]));
+            return;
+        }
+
+        Path archive = Paths.get(args.length > 0 ? args[0] : "astcode.jsa").toAbsolutePath();
+        String file = args.length > 1 ? args[1] : "src/main/java/source/Test1.java";
+        int runs = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        int warmup = args.length > 3 ? Integer.parseInt(args[3]) : 200;
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        String classpath = System.getProperty("java.class.path");
+
+        if (!Files.exists(archive)) {
+            System.out.println("training " + archive);
+            launch(Arrays.asList(java, "-XX:ArchiveClassesAtExit=" + archive, "-cp", classpath, "AstPrinter", "--train"));
+        }
+
+        System.out.println(String.format("%-18s %10s %10s %10s", "", "ready ms", "render ms", "total ms"));
+        for (int variant = 0; variant < 4; variant++) {
+            boolean shared = (variant & 1) != 0;
+            boolean warm = (variant & 2) != 0;
+            List<String> command = new ArrayList<>(Arrays.asList(java, "-cp", classpath));
+            if (shared) {
+                command.add(1, "-XX:SharedArchiveFile=" + archive);
+            }
+            command.addAll(Arrays.asList("StartupBenchmark", "--probe", file, String.valueOf(warm ? warmup : 0)));
+
+            long[] ready = new long[runs];
+            long[] render = new long[runs];
+            long[] total = new long[runs];
+            for (int i = 0; i < runs; i++) {
+                long[] times = launch(command);
+                ready[i] = times[0];
+                render[i] = times[1];
+                total[i] = times[2];
+            }
+            String name = !shared && !warm ? "plain" : shared && warm ? "cds + warm-up" : shared ? "cds" : "warm-up";
+            System.out.println(String.format("%-18s %10.1f %10.1f %10.1f", name, median(ready), median(render), median(total)));
+        }
+    }
+
+    /**
+     * Runs {@code command} and returns, in nanoseconds, when it was ready, how long its render took, and
+     * when it finished rendering. A command that is not a probe returns zeros.
+     */
+    private static long[] launch(List<String> command) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        long[] times = new long[3];
+        StringBuilder output = new StringBuilder();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                if (line.equals("ready")) {
+                    times[0] = System.nanoTime() - start;
+                } else if (line.startsWith("rendered ")) {
+                    times[2] = System.nanoTime() - start;
+                    times[1] = Long.parseLong(line.substring("rendered ".length()));
+                } else {
+                    output.append(line).append('\n');
+                }
+            }
+        }
+        if (process.waitFor() != 0) {
+            throw new IllegalStateException(String.join(" ", command) + " failed:\n" + output);
+        }
+        return times;
+    }
+
+    private static void probe(String file, int warmup) throws IOException {
+        AstConfiguration configuration = new AstConfiguration().setLexerFallback(true);
+        if (warmup > 0) {
+            Warmup.run(configuration, warmup);
+        }
+        System.out.println("ready");
+        System.out.flush();
+
+        long start = System.nanoTime();
+        MappedSourceReader.MappedSource source = new MappedSourceReader().read(Paths.get(file));
+        CompilationUnit cu = LexicalHighlighter.parse(source.getChars(), source::parse, configuration);
+        String html;
+        if (cu == null) {
+            html = new LexicalHighlighter(configuration).highlight(source.getChars());
+        } else {
+            AstVisitor visitor = AstVisitor.create(configuration, null);
+            cu.accept(visitor, null);
+            html = visitor.getSource();
+        }
+        long nanos = System.nanoTime() - start;
+        System.out.println("rendered " + nanos);
+        System.out.println(html.length() + " chars");
+    }
+
+    private static double median(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        long middle = sorted.length % 2 == 1
+                ? sorted[sorted.length / 2]
+                : (sorted[sorted.length / 2 - 1] + sorted[sorted.length / 2]) / 2;
+        return middle / 1e6;
+    }
+}
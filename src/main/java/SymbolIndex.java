@@ -0,0 +1,217 @@
+import Dom.ElementType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Declarations and references of a rendered file: their names, where they are in the output and where
+ * they were in the source, so "go to definition" does not need to parse the file again.
+ *
+ * Symbols are kept in one int array, six ints each: {@link ElementType} ordinal, index into the name
+ * table, output offset and length in chars, source line and source column. Lines and columns are 1-based,
+ * 0 when the node had no position.
+ *
+ * The binary form is the magic bytes "ASTS", a format version, the name table (a count, then every
+ * name as a byte length and UTF-8 bytes) and the symbols, all as unsigned varints, with output offsets
+ * relative to the previous symbol's.
+ */
+public class SymbolIndex {
+    private static final int MAGIC = 0x41535453;
+    private static final int FORMAT_VERSION = 1;
+    private static final int STRIDE = 6;
+
+    private final List<String> names = new ArrayList<>();
+    private final Map<String, Integer> nameIndex = new HashMap<>();
+    private int[] symbols = new int[64 * STRIDE];
+    private int count = 0;
+
+    /**
+     * Appends a symbol and returns its index, so its output length can be filled in once it is known.
+     */
+    int add(ElementType kind, String name, int outputOffset, int outputLength, int line, int column) {
+        Integer index = this.nameIndex.get(name);
+        if (index == null) {
+            index = this.names.size();
+            this.names.add(name);
+            this.nameIndex.put(name, index);
+        }
+        return add(kind.ordinal(), index, outputOffset, outputLength, line, column);
+    }
+
+    void setOutputLength(int index, int outputLength) {
+        this.symbols[index * STRIDE + 3] = outputLength;
+    }
+
+    private int add(int kind, int name, int outputOffset, int outputLength, int line, int column) {
+        if (this.count * STRIDE == this.symbols.length) {
+            this.symbols = Arrays.copyOf(this.symbols, this.symbols.length * 2);
+        }
+        int index = this.count++;
+        int i = index * STRIDE;
+        this.symbols[i] = kind;
+        this.symbols[i + 1] = name;
+        this.symbols[i + 2] = outputOffset;
+        this.symbols[i + 3] = outputLength;
+        this.symbols[i + 4] = line;
+        this.symbols[i + 5] = column;
+        return index;
+    }
+
+    void clear() {
+        this.names.clear();
+        this.nameIndex.clear();
+        this.count = 0;
+    }
+
+    public int size() {
+        return this.count;
+    }
+
+    public ElementType getKind(int index) {
+        return ElementType.values()[this.symbols[index * STRIDE]];
+    }
+
+    public boolean isDeclaration(int index) {
+        return getKind(index).isDeclaration();
+    }
+
+    public String getName(int index) {
+        return this.names.get(this.symbols[index * STRIDE + 1]);
+    }
+
+    public int getOutputOffset(int index) {
+        return this.symbols[index * STRIDE + 2];
+    }
+
+    public int getOutputLength(int index) {
+        return this.symbols[index * STRIDE + 3];
+    }
+
+    public int getLine(int index) {
+        return this.symbols[index * STRIDE + 4];
+    }
+
+    public int getColumn(int index) {
+        return this.symbols[index * STRIDE + 5];
+    }
+
+    /**
+     * Indexes of the declarations named {@code name}, in output order.
+     */
+    public int[] findDeclarations(String name) {
+        Integer nameIndex = this.nameIndex.get(name);
+        if (nameIndex == null) {
+            return new int[0];
+        }
+        int[] found = new int[8];
+        int n = 0;
+        for (int i = 0; i < this.count; i++) {
+            if (this.symbols[i * STRIDE + 1] == nameIndex && isDeclaration(i)) {
+                if (n == found.length) {
+                    found = Arrays.copyOf(found, n * 2);
+                }
+                found[n++] = i;
+            }
+        }
+        return Arrays.copyOf(found, n);
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        byte[] buffer = new byte[8192];
+        int n = 0;
+        buffer[n++] = (byte) (MAGIC >>> 24);
+        buffer[n++] = (byte) (MAGIC >>> 16);
+        buffer[n++] = (byte) (MAGIC >>> 8);
+        buffer[n++] = (byte) MAGIC;
+        n = TokenStream.putVarint(buffer, n, FORMAT_VERSION);
+
+        n = TokenStream.putVarint(buffer, n, this.names.size());
+        for (String name : this.names) {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            if (n + 5 + bytes.length > buffer.length) {
+                out.write(buffer, 0, n);
+                n = 0;
+            }
+            n = TokenStream.putVarint(buffer, n, bytes.length);
+            if (bytes.length > buffer.length - n) {
+                out.write(buffer, 0, n);
+                out.write(bytes);
+                n = 0;
+            } else {
+                System.arraycopy(bytes, 0, buffer, n, bytes.length);
+                n += bytes.length;
+            }
+        }
+
+        n = TokenStream.putVarint(buffer, n, this.count);
+        int previous = 0;
+        for (int i = 0; i < this.count; i++) {
+            if (n > buffer.length - 5 * STRIDE) {
+                out.write(buffer, 0, n);
+                n = 0;
+            }
+            int s = i * STRIDE;
+            n = TokenStream.putVarint(buffer, n, this.symbols[s]);
+            n = TokenStream.putVarint(buffer, n, this.symbols[s + 1]);
+            n = TokenStream.putVarint(buffer, n, this.symbols[s + 2] - previous);
+            n = TokenStream.putVarint(buffer, n, this.symbols[s + 3]);
+            n = TokenStream.putVarint(buffer, n, this.symbols[s + 4]);
+            n = TokenStream.putVarint(buffer, n, this.symbols[s + 5]);
+            previous = this.symbols[s + 2];
+        }
+        out.write(buffer, 0, n);
+    }
+
+    public static SymbolIndex readFrom(InputStream in) throws IOException {
+        int magic = 0;
+        for (int i = 0; i < 4; i++) {
+            magic = magic << 8 | TokenStream.readByte(in);
+        }
+        if (magic != MAGIC) {
+            throw new IOException("not a symbol index");
+        }
+        int version = TokenStream.readVarint(in);
+        if (version != FORMAT_VERSION) {
+            throw new IOException("unsupported symbol index version " + version);
+        }
+
+        SymbolIndex index = new SymbolIndex();
+        int nameCount = TokenStream.readVarint(in);
+        for (int i = 0; i < nameCount; i++) {
+            byte[] bytes = new byte[TokenStream.readVarint(in)];
+            for (int read = 0; read < bytes.length; ) {
+                int n = in.read(bytes, read, bytes.length - read);
+                if (n < 0) {
+                    throw new IOException("truncated symbol index");
+                }
+                read += n;
+            }
+            String name = new String(bytes, StandardCharsets.UTF_8);
+            index.nameIndex.put(name, index.names.size());
+            index.names.add(name);
+        }
+
+        int count = TokenStream.readVarint(in);
+        int offset = 0;
+        int kinds = ElementType.values().length;
+        for (int i = 0; i < count; i++) {
+            int kind = TokenStream.readVarint(in);
+            int name = TokenStream.readVarint(in);
+            if (kind >= kinds || name >= nameCount) {
+                throw new IOException("corrupt symbol index");
+            }
+            offset += TokenStream.readVarint(in);
+            int length = TokenStream.readVarint(in);
+            int line = TokenStream.readVarint(in);
+            index.add(kind, name, offset, length, line, TokenStream.readVarint(in));
+        }
+        return index;
+    }
+}
@@ -0,0 +1,84 @@
+import Dom.ElementType;
+import com.github.javaparser.Position;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.expr.AnnotationExpr;
+import com.github.javaparser.ast.expr.SimpleName;
+import com.github.javaparser.ast.type.ClassOrInterfaceType;
+import theme.KeywordEnum;
+
+import java.util.Arrays;
+
+/**
+ * Processor that passes everything on to another one and records each element it decorates
+ * into a {@link SymbolIndex}, so the index comes out of the same traversal as the markup.
+ */
+public class SymbolIndexProcessor extends Processor {
+    private final Processor delegate;
+    private final SymbolIndex index = new SymbolIndex();
+    private int[] open = new int[8];
+    private int depth = 0;
+
+    public SymbolIndexProcessor(AstVisitor visitor, Processor delegate) {
+        super(visitor, delegate.printer);
+        this.delegate = delegate;
+    }
+
+    public SymbolIndex getIndex() {
+        return index;
+    }
+
+    public Processor getDelegate() {
+        return delegate;
+    }
+
+    private static String name(Node node) {
+        if (node instanceof SimpleName) {
+            return ((SimpleName) node).getIdentifier();
+        } else if (node instanceof AnnotationExpr) {
+            return ((AnnotationExpr) node).getName().asString();
+        }
+        return node.toString();
+    }
+
+    @Override
+    public void printKeyword(KeywordEnum keyword) {
+        delegate.printKeyword(keyword);
+    }
+
+    @Override
+    protected void compilationUnit(CompilationUnit unit) {
+        delegate.compilationUnit(unit);
+    }
+
+    @Override
+    protected void typeReference(ClassOrInterfaceType type) {
+        delegate.typeReference(type);
+    }
+
+    @Override
+    protected void open(ElementType type, Node node) {
+        delegate.open(type, node);
+        Position begin = node.getBegin().orElse(null);
+        int symbol = index.add(type, name(node), (int) printer.contentPosition(), 0,
+                begin == null ? 0 : begin.line, begin == null ? 0 : begin.column);
+        if (depth == open.length) {
+            open = Arrays.copyOf(open, depth * 2);
+        }
+        open[depth++] = symbol;
+    }
+
+    @Override
+    protected void close(ElementType type, Node node) {
+        int symbol = open[--depth];
+        index.setOutputLength(symbol, (int) printer.position() - index.getOutputOffset(symbol));
+        delegate.close(type, node);
+    }
+
+    @Override
+    public void reset() {
+        index.clear();
+        depth = 0;
+        delegate.reset();
+    }
+}
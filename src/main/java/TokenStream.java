@@ -0,0 +1,169 @@
+import Dom.ElementType;
+import theme.DecoratorType;
+import theme.KeywordEnum;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Highlighting of a rendered source as (offset, length, type) triples over its plain text.
+ *
+ * Triples are kept in one int array ordered by offset. Types below {@link #KEYWORD_BASE} are
+ * {@link ElementType} ordinals, the rest are {@link KeywordEnum} ordinals shifted by it.
+ *
+ * The binary form is the magic bytes "ASTT", a format version, the token count and then every token
+ * as unsigned varints: offset relative to the previous token's offset, length and type.
+ */
+public class TokenStream {
+    public static final int KEYWORD_BASE = ElementType.values().length;
+    private static final int MAGIC = 0x41535454;
+    private static final int FORMAT_VERSION = 1;
+
+    private int[] tokens;
+    private int count = 0;
+
+    public TokenStream() {
+        this(256);
+    }
+
+    public TokenStream(int capacity) {
+        this.tokens = new int[Math.max(capacity, 1) * 3];
+    }
+
+    public static int typeOf(ElementType element) {
+        return element.ordinal();
+    }
+
+    public static int typeOf(KeywordEnum keyword) {
+        return KEYWORD_BASE + keyword.ordinal();
+    }
+
+    public static DecoratorType decoratorOf(int type) {
+        return type < KEYWORD_BASE ? ElementType.values()[type].getDecorator() : DecoratorType.KEYWORD;
+    }
+
+    /**
+     * Appends a token and returns its index, so its length can be filled in once it is known.
+     */
+    int add(int offset, int length, int type) {
+        if (this.count * 3 == this.tokens.length) {
+            this.tokens = Arrays.copyOf(this.tokens, this.tokens.length * 2);
+        }
+        int index = this.count++;
+        this.tokens[index * 3] = offset;
+        this.tokens[index * 3 + 1] = length;
+        this.tokens[index * 3 + 2] = type;
+        return index;
+    }
+
+    void setLength(int index, int length) {
+        this.tokens[index * 3 + 1] = length;
+    }
+
+    void clear() {
+        this.count = 0;
+    }
+
+    public int size() {
+        return this.count;
+    }
+
+    public int getOffset(int index) {
+        return this.tokens[index * 3];
+    }
+
+    public int getLength(int index) {
+        return this.tokens[index * 3 + 1];
+    }
+
+    public int getType(int index) {
+        return this.tokens[index * 3 + 2];
+    }
+
+    /**
+     * A copy of the triples, three ints per token.
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(this.tokens, this.count * 3);
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        byte[] buffer = new byte[8192];
+        int n = 0;
+        buffer[n++] = (byte) (MAGIC >>> 24);
+        buffer[n++] = (byte) (MAGIC >>> 16);
+        buffer[n++] = (byte) (MAGIC >>> 8);
+        buffer[n++] = (byte) MAGIC;
+        n = putVarint(buffer, n, FORMAT_VERSION);
+        n = putVarint(buffer, n, this.count);
+
+        int previous = 0;
+        for (int i = 0; i < this.count; i++) {
+            if (n > buffer.length - 15) {
+                out.write(buffer, 0, n);
+                n = 0;
+            }
+            n = putVarint(buffer, n, getOffset(i) - previous);
+            n = putVarint(buffer, n, getLength(i));
+            n = putVarint(buffer, n, getType(i));
+            previous = getOffset(i);
+        }
+        out.write(buffer, 0, n);
+    }
+
+    public static TokenStream readFrom(InputStream in) throws IOException {
+        int magic = 0;
+        for (int i = 0; i < 4; i++) {
+            magic = magic << 8 | readByte(in);
+        }
+        if (magic != MAGIC) {
+            throw new IOException("not a token stream");
+        }
+        int version = readVarint(in);
+        if (version != FORMAT_VERSION) {
+            throw new IOException("unsupported token stream version " + version);
+        }
+
+        int count = readVarint(in);
+        TokenStream stream = new TokenStream(count);
+        int offset = 0;
+        for (int i = 0; i < count; i++) {
+            offset += readVarint(in);
+            int length = readVarint(in);
+            stream.add(offset, length, readVarint(in));
+        }
+        return stream;
+    }
+
+    static int putVarint(byte[] buffer, int n, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer[n++] = (byte) (value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        buffer[n++] = (byte) value;
+        return n;
+    }
+
+    static int readVarint(InputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = readByte(in);
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("malformed varint");
+    }
+
+    static int readByte(InputStream in) throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException();
+        }
+        return b;
+    }
+}
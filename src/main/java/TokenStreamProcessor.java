@@ -0,0 +1,66 @@
+import Dom.ElementType;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import theme.KeywordEnum;
+
+import java.util.Arrays;
+
+/**
+ * Processor that prints plain source and records what it highlights into a {@link TokenStream},
+ * for front-ends that do their own rendering.
+ */
+public class TokenStreamProcessor extends Processor {
+    private final TokenStream tokens = new TokenStream();
+    private int[] open = new int[8];
+    private int depth = 0;
+
+    public TokenStreamProcessor(AstVisitor visitor) {
+        super(visitor);
+    }
+
+    public TokenStreamProcessor(AstVisitor visitor, SourcePrinter printer) {
+        super(visitor, printer);
+    }
+
+    /**
+     * Renders the compilation unit as plain source into {@code out} and returns its tokens.
+     */
+    public static TokenStream render(CompilationUnit cu, AstConfiguration configuration, Appendable out) {
+        AstVisitor visitor = new AstVisitor(configuration, out, TokenStreamProcessor::new);
+        cu.accept(visitor, null);
+        visitor.flush();
+        return ((TokenStreamProcessor) visitor.getProcessor()).getTokens();
+    }
+
+    public TokenStream getTokens() {
+        return tokens;
+    }
+
+    @Override
+    public void reset() {
+        tokens.clear();
+        depth = 0;
+    }
+
+    @Override
+    public void printKeyword(KeywordEnum keyword) {
+        String text = keyword.getCodeRepresentation();
+        int offset = (int) printer.contentPosition();
+        printer.print(text);
+        tokens.add(offset, text.length(), TokenStream.typeOf(keyword));
+    }
+
+    @Override
+    protected void open(ElementType type, Node node) {
+        if (depth == open.length) {
+            open = Arrays.copyOf(open, depth * 2);
+        }
+        open[depth++] = tokens.add((int) printer.contentPosition(), 0, TokenStream.typeOf(type));
+    }
+
+    @Override
+    protected void close(ElementType type, Node node) {
+        int index = open[--depth];
+        tokens.setLength(index, (int) printer.position() - tokens.getOffset(index));
+    }
+}
@@ -0,0 +1,291 @@
+import com.github.javaparser.ParseProblemException;
+import com.github.javaparser.Position;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.BodyDeclaration;
+import com.github.javaparser.ast.body.TypeDeclaration;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Where every type of a source tree is declared, by fully qualified name, read through a memory mapping.
+ *
+ * The index is built in one parallel pass that parses each file, keeps only its package and type
+ * declarations and drops the AST, so the tree never has to fit in memory. The file holds:
+ *
+ * a header (magic "ASTI", format version, build stamp, file count, bucket count, type count, string
+ * area offset), one string offset per source file, an open addressing hash table of 20 byte buckets
+ * (name hash, name offset or -1 when empty, file, line, column) and the string area, where each string
+ * is an int byte length and its UTF-8 bytes. Looking a name up is a hash and a few bucket reads.
+ */
+public class TypeIndex {
+    private static final int MAGIC = 0x41535449;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER = 36;
+    private static final int BUCKET = 20;
+
+    private final ByteBuffer buffer;
+    private final long stamp;
+    private final int fileCount;
+    private final int bucketCount;
+    private final int typeCount;
+    private final int buckets;
+    private final int strings;
+    private final String[] files;
+
+    private TypeIndex(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER || buffer.getInt(0) != MAGIC) {
+            throw new IOException("not a type index");
+        }
+        if (buffer.getInt(4) != FORMAT_VERSION) {
+            throw new IOException("unsupported type index version " + buffer.getInt(4));
+        }
+        this.stamp = buffer.getLong(8);
+        this.fileCount = buffer.getInt(16);
+        this.bucketCount = buffer.getInt(20);
+        this.typeCount = buffer.getInt(24);
+        this.strings = buffer.getInt(28);
+        this.buckets = HEADER + this.fileCount * 4;
+        this.files = new String[this.fileCount];
+    }
+
+    public static TypeIndex open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + " is too large to map: " + channel.size() + " bytes");
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new TypeIndex(mapped);
+        }
+    }
+
+    /**
+     * Indexes every .java file under {@code sourceRoot} into {@code indexFile} and opens it.
+     * Files that do not parse are skipped; when a name is declared twice, the first file in path order wins.
+     */
+    public static TypeIndex build(Path sourceRoot, Path indexFile, int parallelism) throws IOException {
+        Path root = sourceRoot.toAbsolutePath().normalize();
+        List<Path> sources = BatchRenderer.findSources(root, null);
+        Collections.sort(sources);
+
+        List<String> files = new ArrayList<>(sources.size());
+        for (Path source : sources) {
+            files.add(root.relativize(source).toString().replace('\\', '/'));
+        }
+
+        Map<String, long[]> found = new ConcurrentHashMap<>();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        ThreadLocal<MappedSourceReader> readers = ThreadLocal.withInitial(MappedSourceReader::new);
+        try {
+            List<ForkJoinTask<?>> tasks = new ArrayList<>(sources.size());
+            for (int i = 0; i < sources.size(); i++) {
+                int file = i;
+                Path source = sources.get(i);
+                tasks.add(pool.submit(() -> {
+                    try {
+                        CompilationUnit cu = readers.get().read(source).parse();
+                        String prefix = cu.getPackage().map(p -> p.getName().asString() + ".").orElse("");
+                        for (TypeDeclaration<?> type : cu.getTypes()) {
+                            collect(type, prefix, file, found);
+                        }
+                    } catch (IOException | ParseProblemException e) {
+                        System.err.println("not indexing " + source + ": " + e.getMessage());
+                    }
+                }));
+            }
+            for (ForkJoinTask<?> task : tasks) {
+                task.join();
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        write(indexFile, files, new TreeMap<>(found));
+        return open(indexFile);
+    }
+
+    /**
+     * Records {@code type} and its member types. On a clash the entry with the lower file number is kept,
+     * so the result does not depend on which thread got there first.
+     */
+    private static void collect(TypeDeclaration<?> type, String prefix, int file, Map<String, long[]> found) {
+        String name = prefix + type.getName().getIdentifier();
+        Position begin = type.getName().getBegin().orElse(Position.pos(0, 0));
+        found.merge(name, new long[]{file, begin.line, begin.column}, (a, b) -> a[0] <= b[0] ? a : b);
+        for (BodyDeclaration<?> member : type.getMembers()) {
+            if (member instanceof TypeDeclaration) {
+                collect((TypeDeclaration<?>) member, name + ".", file, found);
+            }
+        }
+    }
+
+    private static void write(Path indexFile, List<String> files, Map<String, long[]> types) throws IOException {
+        int bucketCount = 16;
+        while (bucketCount < types.size() * 2) {
+            bucketCount <<= 1;
+        }
+
+        ByteArrayBuilder strings = new ByteArrayBuilder();
+        int[] fileOffsets = new int[files.size()];
+        for (int i = 0; i < files.size(); i++) {
+            fileOffsets[i] = strings.add(files.get(i));
+        }
+
+        int[] table = new int[bucketCount * 5];
+        for (int i = 0; i < bucketCount; i++) {
+            table[i * 5 + 1] = -1;
+        }
+        for (Map.Entry<String, long[]> type : types.entrySet()) {
+            int hash = type.getKey().hashCode();
+            int slot = hash & (bucketCount - 1);
+            while (table[slot * 5 + 1] != -1) {
+                slot = (slot + 1) & (bucketCount - 1);
+            }
+            table[slot * 5] = hash;
+            table[slot * 5 + 1] = strings.add(type.getKey());
+            table[slot * 5 + 2] = (int) type.getValue()[0];
+            table[slot * 5 + 3] = (int) type.getValue()[1];
+            table[slot * 5 + 4] = (int) type.getValue()[2];
+        }
+
+        int stringStart = HEADER + files.size() * 4 + bucketCount * BUCKET;
+        ByteBuffer out = ByteBuffer.allocate(stringStart + strings.size());
+        out.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(System.currentTimeMillis() ^ System.nanoTime())
+                .putInt(files.size()).putInt(bucketCount).putInt(types.size()).putInt(stringStart).putInt(0);
+        for (int offset : fileOffsets) {
+            out.putInt(offset);
+        }
+        for (int value : table) {
+            out.putInt(value);
+        }
+        out.put(strings.bytes, 0, strings.size());
+
+        Path temp = Files.createTempFile(indexFile.toAbsolutePath().getParent(), indexFile.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, out.array());
+            Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Changes whenever the index is rebuilt, for use in cache keys.
+     */
+    public long getStamp() {
+        return stamp;
+    }
+
+    public int size() {
+        return typeCount;
+    }
+
+    /**
+     * The bucket of the type named {@code qualifiedName}, or -1 when it is not in the index.
+     */
+    public int find(String qualifiedName) {
+        int hash = qualifiedName.hashCode();
+        int mask = this.bucketCount - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int at = this.buckets + slot * BUCKET;
+            int name = this.buffer.getInt(at + 4);
+            if (name == -1) {
+                return -1;
+            }
+            if (this.buffer.getInt(at) == hash && stringEquals(name, qualifiedName)) {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * Path of the declaring file relative to the indexed root, with / separators.
+     */
+    public String getFile(int slot) {
+        int file = this.buffer.getInt(this.buckets + slot * BUCKET + 8);
+        String path = this.files[file];
+        if (path == null) {
+            path = string(this.buffer.getInt(HEADER + file * 4));
+            this.files[file] = path;
+        }
+        return path;
+    }
+
+    public int getLine(int slot) {
+        return this.buffer.getInt(this.buckets + slot * BUCKET + 12);
+    }
+
+    public int getColumn(int slot) {
+        return this.buffer.getInt(this.buckets + slot * BUCKET + 16);
+    }
+
+    private String string(int offset) {
+        int at = this.strings + offset;
+        byte[] bytes = new byte[this.buffer.getInt(at)];
+        ByteBuffer view = this.buffer.duplicate();
+        view.position(at + 4);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Compares without decoding; type names that are not plain ASCII fall back to a decoded comparison.
+     */
+    private boolean stringEquals(int offset, String text) {
+        int at = this.strings + offset;
+        int length = this.buffer.getInt(at);
+        if (length != text.length()) {
+            return length >= text.length() && string(offset).equals(text);
+        }
+        for (int i = 0; i < length; i++) {
+            byte b = this.buffer.get(at + 4 + i);
+            if (b < 0) {
+                return string(offset).equals(text);
+            }
+            if (b != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The string area while it is being written.
+     */
+    private static class ByteArrayBuilder {
+        private byte[] bytes = new byte[4096];
+        private int size = 0;
+
+        int add(String text) {
+            byte[] encoded = text.getBytes(StandardCharsets.UTF_8);
+            if (this.size + 4 + encoded.length > this.bytes.length) {
+                this.bytes = java.util.Arrays.copyOf(this.bytes, Math.max(this.bytes.length * 2, this.size + 4 + encoded.length));
+            }
+            int offset = this.size;
+            ByteBuffer.wrap(this.bytes, offset, 4).putInt(encoded.length);
+            System.arraycopy(encoded, 0, this.bytes, offset + 4, encoded.length);
+            this.size += 4 + encoded.length;
+            return offset;
+        }
+
+        int size() {
+            return this.size;
+        }
+    }
+}
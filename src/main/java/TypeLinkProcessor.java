@@ -0,0 +1,180 @@
+import Dom.Dom;
+import Dom.ElementType;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.imports.ImportDeclaration;
+import com.github.javaparser.ast.imports.SingleTypeImportDeclaration;
+import com.github.javaparser.ast.imports.TypeImportOnDemandDeclaration;
+import com.github.javaparser.ast.type.ClassOrInterfaceType;
+import theme.KeywordEnum;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Processor that passes everything on to a {@link DomPrinter} and wraps every type reference it can
+ * resolve through a {@link TypeIndex} in a link to the file declaring the type.
+ *
+ * A name is resolved the way the compiler would, minus java.lang: as written when qualified, then through
+ * the single type imports, the file's own package and the on demand imports, each a single index lookup.
+ * Links point at {@code <link base><file>.html#L<line>}, matching the tree {@link BatchRenderer} writes.
+ */
+public class TypeLinkProcessor extends Processor {
+    private final Processor delegate;
+    private final TypeIndex types;
+    private final String linkBase;
+    private final char[] linkEnd;
+    private final Map<String, char[]> links = new HashMap<>();
+    private boolean[] linked = new boolean[8];
+    private int depth = 0;
+
+    private ClassOrInterfaceType reference;
+    private CompilationUnit unit;
+    private boolean unitRead;
+    private final Map<String, String> imports = new HashMap<>();
+    private final List<String> packages = new ArrayList<>();
+
+    public TypeLinkProcessor(AstVisitor visitor, Processor delegate, TypeIndex types, String linkBase) {
+        super(visitor, delegate.printer);
+        this.delegate = delegate;
+        this.types = types;
+        this.linkBase = linkBase;
+        this.linkEnd = new Dom("a").getDomEnd().toCharArray();
+    }
+
+    @Override
+    public void printKeyword(KeywordEnum keyword) {
+        delegate.printKeyword(keyword);
+    }
+
+    @Override
+    protected void compilationUnit(CompilationUnit unit) {
+        readImports(unit);
+        delegate.compilationUnit(unit);
+    }
+
+    @Override
+    protected void typeReference(ClassOrInterfaceType type) {
+        reference = type;
+        delegate.typeReference(type);
+    }
+
+    @Override
+    protected void open(ElementType type, Node node) {
+        char[] link = null;
+        if ((type == ElementType.CLASS || type == ElementType.NEW) && reference != null) {
+            link = link(reference);
+            reference = null;
+        }
+        if (link != null) {
+            printer.print(link);
+        }
+        if (depth == linked.length) {
+            linked = Arrays.copyOf(linked, depth * 2);
+        }
+        linked[depth++] = link != null;
+        delegate.open(type, node);
+    }
+
+    @Override
+    protected void close(ElementType type, Node node) {
+        delegate.close(type, node);
+        if (linked[--depth]) {
+            printer.print(linkEnd);
+        }
+    }
+
+    @Override
+    public void reset() {
+        depth = 0;
+        reference = null;
+        unit = null;
+        unitRead = false;
+        delegate.reset();
+    }
+
+    /**
+     * The opening link tag for {@code type}, or null when it is not in the index. The type is taken from
+     * {@link #typeReference} rather than from the name's parent, which the parser leaves unset on simple names.
+     */
+    private char[] link(ClassOrInterfaceType type) {
+        if (!unitRead) {
+            Node root = OrphanCommentIndex.rootOf(type);
+            readImports(root instanceof CompilationUnit ? (CompilationUnit) root : null);
+        }
+        if (unit == null) {
+            return null;
+        }
+
+        int slot = resolve(type);
+        if (slot == -1) {
+            return null;
+        }
+        String href = linkBase + types.getFile(slot) + ".html#L" + types.getLine(slot);
+        char[] link = links.get(href);
+        if (link == null) {
+            Dom dom = new Dom("a");
+            dom.setHref(href);
+            link = dom.getDomStart().toCharArray();
+            links.put(href, link);
+        }
+        return link;
+    }
+
+    private int resolve(ClassOrInterfaceType type) {
+        String name = qualifiedName(type);
+        int dot = name.indexOf('.');
+        String first = dot == -1 ? name : name.substring(0, dot);
+        String rest = dot == -1 ? "" : name.substring(dot);
+
+        int slot = dot == -1 ? -1 : types.find(name);
+        if (slot != -1) {
+            return slot;
+        }
+        String imported = imports.get(first);
+        if (imported != null && (slot = types.find(imported + rest)) != -1) {
+            return slot;
+        }
+        for (String pkg : packages) {
+            if ((slot = types.find(pkg + name)) != -1) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private static String qualifiedName(ClassOrInterfaceType type) {
+        String name = type.getName().getIdentifier();
+        for (ClassOrInterfaceType scope = type.getScope().orElse(null); scope != null; scope = scope.getScope().orElse(null)) {
+            name = scope.getName().getIdentifier() + "." + name;
+        }
+        return name;
+    }
+
+    /**
+     * Collects what simple names can resolve to in {@code cu}: its single type imports by simple name,
+     * then its own package and its on demand imports as prefixes, in the order they are tried.
+     * A render that starts below the compilation unit reads them once, from its first type reference.
+     */
+    private void readImports(CompilationUnit cu) {
+        unit = cu;
+        unitRead = true;
+        imports.clear();
+        packages.clear();
+        if (cu == null) {
+            return;
+        }
+        packages.add(cu.getPackage().map(p -> p.getName().asString() + ".").orElse(""));
+        for (ImportDeclaration declaration : cu.getImports()) {
+            if (declaration instanceof SingleTypeImportDeclaration) {
+                ClassOrInterfaceType type = ((SingleTypeImportDeclaration) declaration).getType();
+                imports.put(type.getName().getIdentifier(), qualifiedName(type));
+            } else if (declaration instanceof TypeImportOnDemandDeclaration) {
+                packages.add(((TypeImportOnDemandDeclaration) declaration).getName().asString() + ".");
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Renders a bundled synthetic corpus so class loading and JIT compilation happen before real work arrives.
+ *
+ * {@link #run} repeats what a request does, parsing and rendering into a discarding sink, until the hot
+ * paths are compiled. {@link #train} goes once through every renderer and the highlight server instead,
+ * for a training run that dumps a class data sharing archive at exit:
+ * {@code java -XX:ArchiveClassesAtExit=astcode.jsa -jar astcode.jar --train}, then start with
+ * {@code -XX:SharedArchiveFile=astcode.jsa}. The archive only covers classes loaded from jars.
+ */
+public class Warmup {
+    private static final String CORPUS = "/warmup/Corpus.java";
+
+    private Warmup() {
+    }
+
+    /**
+     * The bundled corpus source.
+     */
+    public static String corpus() {
+        try (InputStream in = Warmup.class.getResourceAsStream(CORPUS)) {
+            if (in == null) {
+                throw new IllegalStateException("no warm-up corpus at " + CORPUS);
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(16384);
+            byte[] chunk = new byte[8192];
+            for (int n = in.read(chunk); n > 0; n = in.read(chunk)) {
+                bytes.write(chunk, 0, n);
+            }
+            return bytes.toString(StandardCharsets.UTF_8.name());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Parses and renders the corpus {@code iterations} times with {@code configuration}, through the lexer
+     * as well when it may fall back to it, and compressed when it precompresses.
+     *
+     * @return nanoseconds spent
+     */
+    public static long run(AstConfiguration configuration, int iterations) {
+        String source = corpus();
+        long start = System.nanoTime();
+        AstVisitor visitor = AstVisitor.create(configuration, null);
+        LexicalHighlighter lexer = configuration.isLexerFallback() ? new LexicalHighlighter(configuration) : null;
+        CompressedOutput compressed = configuration.isPrecompress() ? new CompressedOutput() : null;
+        Writer out = new Discard();
+        for (int i = 0; i < iterations; i++) {
+            CompilationUnit cu = JavaParser.parse(source);
+            visitor.reset(compressed == null ? out : compressed);
+            if (compressed != null) {
+                compressed.reset();
+            }
+            cu.accept(visitor, null);
+            visitor.flush();
+            if (compressed != null) {
+                compressed.close();
+            }
+            if (lexer != null) {
+                lexer.highlight(source, out);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Uses every renderer and the highlight server once, so that the classes they need are loaded.
+     */
+    public static void train(AstConfiguration configuration) throws IOException {
+        String source = corpus();
+        run(configuration, 1);
+        Writer out = new Discard();
+
+        CompilationUnit cu = JavaParser.parse(source);
+        new LexicalHighlighter(configuration).highlight(source, out);
+        TokenStreamProcessor.render(cu, configuration, out);
+        AnsiProcessor.render(cu, configuration, out);
+        new FanOutRenderer(configuration).addHtml(out).addTokens(out).addAnsi(out).render(cu);
+        run(new AstConfiguration().setSymbolIndex(true).setPrecompress(true).setLexerFallback(true), 1);
+
+        String edited = source.replace("total--;", "total -= 2;");
+        new DiffRenderer(configuration).render(source, edited);
+        IncrementalRenderer incremental = new IncrementalRenderer(configuration);
+        incremental.render(source);
+        incremental.update(edited);
+
+        HighlightServer server = new HighlightServer(configuration, 0, 1, 1).start();
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(
+                    "http://localhost:" + server.getPort() + "/highlight?lines=1-40").openConnection();
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            try (OutputStream body = connection.getOutputStream()) {
+                body.write(source.getBytes(StandardCharsets.UTF_8));
+            }
+            try (InputStream response = connection.getInputStream()) {
+                byte[] chunk = new byte[8192];
+                while (response.read(chunk) > 0) {
+                    // drained only so the whole response path runs
+                }
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static class Discard extends Writer {
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+        }
+
+        @Override
+        public void write(String text, int offset, int length) {
+        }
+
+        @Override
+        public Writer append(CharSequence text, int start, int end) {
+            return this;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package theme;
+
+/**
+ * Colours and font style of one {@link DecoratorType}, with its inline css built once.
+ */
+public final class Style {
+    private final String color;
+    private final String background;
+    private final boolean bold;
+    private final boolean italic;
+    private final boolean underline;
+    private final String css;
+
+    public Style(String color, String background, boolean bold, boolean italic, boolean underline) {
+        this.color = color;
+        this.background = background;
+        this.bold = bold;
+        this.italic = italic;
+        this.underline = underline;
+
+        StringBuilder css = new StringBuilder();
+        if (color != null) {
+            css.append("color:").append(color).append(';');
+        }
+        if (background != null) {
+            css.append("background-color:").append(background).append(';');
+        }
+        if (bold) {
+            css.append("font-weight:bold;");
+        }
+        if (italic) {
+            css.append("font-style:italic;");
+        }
+        if (underline) {
+            css.append("text-decoration:underline;");
+        }
+        this.css = css.toString();
+    }
+
+    /**
+     * Parses a theme file value: space separated {@code #rrggbb} foreground, {@code bg:#rrggbb}
+     * background and the flags {@code bold}, {@code italic} and {@code underline}.
+     */
+    public static Style parse(String value) {
+        String color = null;
+        String background = null;
+        boolean bold = false;
+        boolean italic = false;
+        boolean underline = false;
+        for (String part : value.trim().split("\\s+")) {
+            if (part.isEmpty()) {
+                continue;
+            }
+            if (part.startsWith("bg:")) {
+                background = color(part.substring(3));
+            } else if (part.startsWith("#")) {
+                color = color(part);
+            } else if ("bold".equals(part)) {
+                bold = true;
+            } else if ("italic".equals(part)) {
+                italic = true;
+            } else if ("underline".equals(part)) {
+                underline = true;
+            } else {
+                throw new IllegalArgumentException("unknown style '" + part + "' in '" + value + "'");
+            }
+        }
+        return new Style(color, background, bold, italic, underline);
+    }
+
+    private static String color(String value) {
+        if (!value.matches("#[0-9a-fA-F]{3}|#[0-9a-fA-F]{6}")) {
+            throw new IllegalArgumentException("not a colour: " + value);
+        }
+        return value.toLowerCase();
+    }
+
+    public String getColor() {
+        return color;
+    }
+
+    public String getBackground() {
+        return background;
+    }
+
+    public boolean isBold() {
+        return bold;
+    }
+
+    public boolean isItalic() {
+        return italic;
+    }
+
+    public boolean isUnderline() {
+        return underline;
+    }
+
+    /**
+     * The declarations of this style, e.g. {@code color:#cc7832;font-weight:bold;}. Empty for an unstyled type.
+     */
+    public String getCss() {
+        return css;
+    }
+
+    public String toString() {
+        return css;
+    }
+}
@@ -1,8 +1,123 @@
 package theme;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
 /**
+ * A set of styles, one per {@link DecoratorType}, compiled into an array indexed by ordinal so a lookup
+ * during rendering is a single array load. Themes are immutable; switch them by replacing the reference.
+ *
+ * Theme files are properties with an optional {@code name} and one entry per decorator, keyed by its
+ * lower case name, e.g. {@code keyword=#cc7832 bold}. Decorators without an entry are left unstyled.
+ *
  * Created by bresai on 2016/12/21.
  */
-public abstract class Theme {
-//    private
+public class Theme {
+    private static final String[] CSS_CLASSES = new String[DecoratorType.values().length];
+
+    static {
+        for (DecoratorType decorator : DecoratorType.values()) {
+            CSS_CLASSES[decorator.ordinal()] = decorator.name().toLowerCase();
+        }
+    }
+
+    private final String name;
+    private final Style[] styles;
+    private final String cacheKey;
+
+    public Theme(String name, Style[] styles) {
+        if (styles.length != DecoratorType.values().length) {
+            throw new IllegalArgumentException("expected one style per decorator type, got " + styles.length);
+        }
+        this.name = name;
+        this.styles = styles.clone();
+
+        StringBuilder key = new StringBuilder(name);
+        for (DecoratorType decorator : DecoratorType.values()) {
+            key.append(';').append(cssClass(decorator)).append('=').append(this.styles[decorator.ordinal()].getCss());
+        }
+        this.cacheKey = key.toString();
+    }
+
+    public static Theme load(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            String name = file.getFileName().toString();
+            int dot = name.lastIndexOf('.');
+            return load(dot > 0 ? name.substring(0, dot) : name, in);
+        }
+    }
+
+    /**
+     * @param defaultName name used when the file has no {@code name} entry
+     */
+    public static Theme load(String defaultName, InputStream in) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+
+        Style[] styles = new Style[DecoratorType.values().length];
+        Style unstyled = new Style(null, null, false, false, false);
+        for (DecoratorType decorator : DecoratorType.values()) {
+            String value = properties.getProperty(cssClass(decorator));
+            styles[decorator.ordinal()] = value == null ? unstyled : Style.parse(value);
+        }
+        for (String key : properties.stringPropertyNames()) {
+            if (!"name".equals(key) && !isDecorator(key)) {
+                throw new IOException("unknown decorator '" + key + "' in theme " + defaultName);
+            }
+        }
+        return new Theme(properties.getProperty("name", defaultName), styles);
+    }
+
+    private static boolean isDecorator(String key) {
+        for (String cls : CSS_CLASSES) {
+            if (cls.equals(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Class name elements of {@code decorator} get in {@link ThemeOutput#CLASS} output.
+     */
+    public static String cssClass(DecoratorType decorator) {
+        return CSS_CLASSES[decorator.ordinal()];
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Style getStyle(DecoratorType decorator) {
+        return styles[decorator.ordinal()];
+    }
+
+    /**
+     * Describes every style of the theme, for use in cache keys.
+     */
+    public String getCacheKey() {
+        return cacheKey;
+    }
+
+    /**
+     * A stylesheet with one rule per styled decorator, for {@link ThemeOutput#CLASS} output.
+     */
+    public String toStylesheet() {
+        StringBuilder css = new StringBuilder();
+        for (DecoratorType decorator : DecoratorType.values()) {
+            String declarations = getStyle(decorator).getCss();
+            if (!declarations.isEmpty()) {
+                css.append('.').append(cssClass(decorator)).append(" { ").append(declarations).append(" }\n");
+            }
+        }
+        return css.toString();
+    }
 }
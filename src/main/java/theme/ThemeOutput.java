@@ -0,0 +1,15 @@
+package theme;
+
+/**
+ * How a {@link Theme} reaches the rendered html.
+ */
+public enum ThemeOutput {
+    /**
+     * Every element carries its style in a {@code style} attribute, so the html needs no stylesheet.
+     */
+    INLINE,
+    /**
+     * Every element carries the class of its {@link DecoratorType}; the styles come from {@link Theme#toStylesheet()}.
+     */
+    CLASS
+}
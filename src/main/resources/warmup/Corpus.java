@@ -0,0 +1,260 @@
+package warmup.corpus;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import static java.lang.Math.max;
+import static java.util.Collections.emptyList;
+
+// Synthetic source covering the constructs the renderer handles, used to warm it up.
+/**
+ * Inventory of parts, with a little of everything Java 8 allows.
+ */
+@SuppressWarnings({"unchecked", "rawtypes"})
+public abstract class Corpus<K extends Comparable<K>, V> extends AbstractMap<K, V> implements Cloneable, Iterable<V> {
+    // orphan comment before the fields
+    private static final int[] PRIMES = new int[] { 2, 3, 5, 7, 11, 13 };
+    private static final String NAME = "corpus";
+    protected transient volatile long revision = 0L;
+    private final Map<K, List<V>> index = new ConcurrentHashMap<>();
+    private char separator = ';';
+    private double ratio = 0.75d, threshold = 1e-3;
+
+    static {
+        System.setProperty("corpus.loaded", Boolean.TRUE.toString());
+    }
+
+    {
+        revision = System.nanoTime();
+    }
+
+    public Corpus() {
+        this(16);
+    }
+
+    protected Corpus(int capacity) {
+        super();
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity " + capacity);
+        }
+        this.revision = capacity;
+    }
+
+    /* block comment before a method */
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        Set<Entry<K, V>> entries = new LinkedHashSet<>();
+        for (Map.Entry<K, List<V>> entry : index.entrySet()) {
+            for (V value : entry.getValue()) {
+                entries.add(new SimpleImmutableEntry<>(entry.getKey(), value));
+            }
+        }
+        return entries;
+    }
+
+    @Override
+    public Iterator<V> iterator() {
+        return new Iterator<V>() {
+            private final Iterator<List<V>> lists = index.values().iterator();
+            private Iterator<V> current = Collections.<V>emptyList().iterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext() && lists.hasNext()) {
+                    current = lists.next().iterator();
+                }
+                return current.hasNext();
+            }
+
+            @Override
+            public V next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+    }
+
+    public synchronized void add(K key, V value) {
+        index.computeIfAbsent(key, k -> new ArrayList<>()).add(value);
+        revision++;
+    }
+
+    public <R> List<R> collect(Function<? super V, ? extends R> mapper) {
+        return index.values().stream()
+                .flatMap(List::stream)
+                .map(mapper)
+                .collect(Collectors.toList());
+    }
+
+    public int score(String text) {
+        int total = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isDigit(c)) {
+                total += c - '0';
+            } else if (c == separator) {
+                continue;
+            } else {
+                total--;
+            }
+        }
+        for (int prime : PRIMES) {
+            total = max(total, prime);
+        }
+        switch (total % 3) {
+            case 0:
+                total <<= 1;
+                break;
+            case 1:
+                total >>>= 1;
+                break;
+            default:
+                total = -total;
+        }
+        int shifted = total > 10 ? total >> 2 : ~total & 0xff;
+        long wide = (long) shifted * 31L;
+        return (int) (wide ^ (wide >>> 32));
+    }
+
+    public String read(Reader reader) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        char[] buffer = new char[256];
+        try {
+            int n;
+            while ((n = reader.read(buffer)) != -1) {
+                builder.append(buffer, 0, n);
+            }
+        } catch (IOException e) {
+            throw new IOException("cannot read " + NAME, e);
+        } finally {
+            synchronized (this) {
+                revision++;
+            }
+        }
+        do {
+            builder.setLength(max(0, builder.length() - 1));
+        } while (builder.length() > 4096);
+        assert builder.length() <= 4096 : "trimmed";
+        return builder.toString();
+    }
+
+    public boolean matches(Object o) {
+        if (o instanceof String) {
+            return ((String) o).isEmpty() || NAME.equals(o);
+        }
+        outer:
+        for (List<V> values : index.values()) {
+            for (V value : values) {
+                if (value == null) {
+                    continue outer;
+                }
+                if (value.equals(o)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    public Object[][] grid(int rows, int columns) {
+        Object[][] grid = new Object[rows][columns];
+        for (int r = 0, c = 0; r < rows; r++, c = 0) {
+            while (c < columns) {
+                grid[r][c] = r * columns + c++;
+            }
+        }
+        return grid;
+    }
+
+    public BiFunction<Integer, Integer, Integer> combiner() {
+        return (a, b) -> {
+            int sum = a + b;
+            return sum > 0 ? sum : -sum;
+        };
+    }
+
+    public List<String> names() {
+        return this.isEmpty() ? emptyList() : Arrays.asList(NAME, String.valueOf(ratio), String.valueOf(threshold));
+    }
+
+    @Override
+    public Corpus<K, V> clone() throws CloneNotSupportedException {
+        return (Corpus<K, V>) super.clone();
+    }
+
+    public abstract <T extends Number & Comparable<T>> T weigh(Collection<? extends T> items, int... factors) throws Exception;
+
+    protected static final class Part implements Comparable<Part> {
+        final String id;
+        final int count;
+
+        Part(String id, int count) {
+            this.id = id;
+            this.count = count;
+        }
+
+        @Override
+        public int compareTo(Part other) {
+            int byId = id.compareTo(other.id);
+            return byId != 0 ? byId : Integer.compare(count, other.count);
+        }
+
+        @Override
+        public String toString() {
+            return id + "x" + count;
+        }
+    }
+
+    public enum Unit {
+        PIECE("pc"), BOX("box") {
+            @Override
+            int size() {
+                return 12;
+            }
+        }, PALLET("pal");
+
+        private final String symbol;
+
+        Unit(String symbol) {
+            this.symbol = symbol;
+        }
+
+        int size() {
+            return 1;
+        }
+
+        public String symbol() {
+            return symbol;
+        }
+    }
+
+    public interface Listener<E> {
+        void changed(E event);
+
+        default Listener<E> andThen(Listener<? super E> next) {
+            return event -> {
+                changed(event);
+                next.changed(event);
+            };
+        }
+
+        static <E> Listener<E> ignoring() {
+            return event -> {
+            };
+        }
+    }
+
+    @java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME)
+    public @interface Tracked {
+        String value() default "";
+
+        int priority() default 0;
+    }
+    // trailing orphan comment
+}
@@ -0,0 +1,100 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BatchRendererTest {
+    private Path root;
+    private Path sources;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("batch");
+        sources = root.resolve("src");
+        Files.createDirectories(sources.resolve("a"));
+        Files.write(sources.resolve("a/Shape.java"), "class Shape {\n}\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(sources.resolve("a/Circle.java"), "class Circle {\n}\n".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(root)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    private static long temporaryFiles(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(file -> file.toString().endsWith(".tmp")).count();
+        }
+    }
+
+    @Test
+    public void rendersRepeatedlyWithOneRenderer() throws IOException {
+        try (BatchRenderer renderer = new BatchRenderer(new AstConfiguration(), 2)) {
+            assertEquals(2, renderer.render(sources, root.resolve("first")).getFiles());
+            assertEquals(2, renderer.render(sources, root.resolve("second")).getFiles());
+        }
+        assertArrayEquals(Files.readAllBytes(root.resolve("first/a/Shape.java.html")),
+                Files.readAllBytes(root.resolve("second/a/Shape.java.html")));
+    }
+
+    @Test
+    public void writesAGzipCopyOfEachFile() throws IOException {
+        try (BatchRenderer renderer = new BatchRenderer(new AstConfiguration().setPrecompress(true), 2)) {
+            renderer.render(sources, root.resolve("out"));
+        }
+        ByteArrayOutputStream unzipped = new ByteArrayOutputStream();
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(root.resolve("out/a/Shape.java.html.gz")))) {
+            byte[] chunk = new byte[4096];
+            for (int n = in.read(chunk); n > 0; n = in.read(chunk)) {
+                unzipped.write(chunk, 0, n);
+            }
+        }
+        assertArrayEquals(Files.readAllBytes(root.resolve("out/a/Shape.java.html")), unzipped.toByteArray());
+    }
+
+    @Test
+    public void countsAFileThatCannotBeWrittenAndGoesOn() throws IOException {
+        Path output = root.resolve("out");
+        Files.createDirectories(output.resolve("a/Shape.java.html"));
+        BatchRenderer.Result result;
+        try (BatchRenderer renderer = new BatchRenderer(new AstConfiguration(), 2)) {
+            result = renderer.render(sources, output);
+        }
+        assertEquals(1, result.getFiles());
+        assertEquals(1, result.getFailures());
+        assertTrue(Files.isRegularFile(output.resolve("a/Circle.java.html")));
+        assertEquals(0, temporaryFiles(output));
+    }
+
+    @Test
+    public void keepsThePreviousOutputWhenARenderFails() throws IOException {
+        Path output = root.resolve("out");
+        try (BatchRenderer renderer = new BatchRenderer(new AstConfiguration(), 2)) {
+            renderer.render(sources, output);
+            byte[] before = Files.readAllBytes(output.resolve("a/Shape.java.html"));
+
+            Files.write(sources.resolve("a/Shape.java"), "class Shape {\n".getBytes(StandardCharsets.UTF_8));
+            BatchRenderer.Result result = renderer.render(sources, output);
+            assertEquals(1, result.getFailures());
+            assertArrayEquals(before, Files.readAllBytes(output.resolve("a/Shape.java.html")));
+        }
+        assertEquals(0, temporaryFiles(output));
+        assertFalse(Files.exists(output.resolve("a/Shape.java.html.gz")));
+    }
+}
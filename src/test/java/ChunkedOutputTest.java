@@ -0,0 +1,94 @@
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ChunkedOutputTest {
+    private static final String SOURCE = "package demo;\n"
+            + "\n"
+            + "import java.util.List;\n"
+            + "\n"
+            + "// orphan at top\n"
+            + "/** A queue. */\n"
+            + "public class Queue<T> {\n"
+            + "    // orphan before field\n"
+            + "    private final List<T> items;\n"
+            + "\n"
+            + "    public Queue(List<T> items) {\n"
+            + "        this.items = items;\n"
+            + "    }\n"
+            + "\n"
+            + "    /* block comment */\n"
+            + "    public T poll() {\n"
+            + "        return items.isEmpty() ? null : items.remove(0);\n"
+            + "    }\n"
+            + "\n"
+            + "    enum State {\n"
+            + "        OPEN, CLOSED\n"
+            + "    }\n"
+            + "    // trailing orphan\n"
+            + "}\n"
+            + "\n"
+            + "interface Sink {\n"
+            + "    void accept(Object item);\n"
+            + "}\n";
+
+    private static String render(AstConfiguration configuration, CompilationUnit cu) {
+        AstVisitor visitor = AstVisitor.create(configuration, null);
+        cu.accept(visitor, null);
+        return visitor.getSource();
+    }
+
+    private static List<String> chunks(AstVisitor visitor, CompilationUnit cu) {
+        List<String> chunks = new ArrayList<>();
+        visitor.setChunkConsumer(chunk -> chunks.add(chunk.toString()));
+        cu.accept(visitor, null);
+        visitor.flush();
+        return chunks;
+    }
+
+    private static void assertChunksMatchSource(AstConfiguration configuration) {
+        CompilationUnit cu = JavaParser.parse(SOURCE);
+        List<String> chunks = chunks(AstVisitor.create(configuration, null), cu);
+        assertTrue(chunks.size() > 4);
+        assertEquals(render(configuration, cu), String.join("", chunks));
+    }
+
+    @Test
+    public void concatenatedChunksEqualTheSource() {
+        assertChunksMatchSource(new AstConfiguration());
+    }
+
+    @Test
+    public void concatenatedChunksEqualTheSourceWithASymbolIndex() {
+        assertChunksMatchSource(new AstConfiguration().setSymbolIndex(true));
+    }
+
+    @Test
+    public void chunksAreNotEmpty() {
+        for (String chunk : chunks(AstVisitor.create(new AstConfiguration(), null), JavaParser.parse(SOURCE))) {
+            assertFalse(chunk.isEmpty());
+        }
+    }
+
+    @Test
+    public void chunksRestartAfterReset() {
+        AstConfiguration configuration = new AstConfiguration();
+        CompilationUnit cu = JavaParser.parse(SOURCE);
+        AstVisitor visitor = AstVisitor.create(configuration, null);
+        List<String> first = chunks(visitor, cu);
+        visitor.reset();
+        assertEquals(first, chunks(visitor, cu));
+
+        visitor.reset();
+        visitor.setChunkConsumer(null);
+        cu.accept(visitor, null);
+        assertEquals(String.join("", first), visitor.getSource());
+    }
+}
@@ -0,0 +1,93 @@
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DiffRendererTest {
+    private static final String OLD = "public class Shape {\n"
+            + "    private int width;\n"
+            + "\n"
+            + "    public int area() {\n"
+            + "        int height = 2;\n"
+            + "        return width * height;\n"
+            + "    }\n"
+            + "\n"
+            + "    public String name() {\n"
+            + "        return \"shape\";\n"
+            + "    }\n"
+            + "}\n";
+
+    private static int count(String text, String part) {
+        int count = 0;
+        for (int at = text.indexOf(part); at != -1; at = text.indexOf(part, at + part.length())) {
+            ++count;
+        }
+        return count;
+    }
+
+    @Test
+    public void sharesMatchedMembers() {
+        DiffRenderer renderer = new DiffRenderer(new AstConfiguration());
+        String diff = renderer.render(OLD, OLD);
+        assertEquals(3, renderer.getSharedMembers());
+        assertEquals(0, renderer.getChangedMembers());
+        assertEquals(3, count(diff, "diff-same"));
+        assertFalse(diff.contains("diff-change"));
+    }
+
+    @Test
+    public void marksAddedMembers() {
+        String added = OLD.replace("    public String name() {", "    public int depth() {\n"
+                + "        return 1;\n"
+                + "    }\n"
+                + "\n"
+                + "    public String name() {");
+        DiffRenderer renderer = new DiffRenderer(new AstConfiguration());
+        String diff = renderer.render(OLD, added);
+        assertEquals(3, renderer.getSharedMembers());
+        assertEquals(1, renderer.getChangedMembers());
+        assertEquals(0, count(diff, "diff-del"));
+        assertEquals(4, count(diff, "diff-add"));
+        assertTrue(diff.contains("depth"));
+    }
+
+    @Test
+    public void marksRemovedMembers() {
+        String removed = OLD.replace("    private int width;\n\n", "");
+        DiffRenderer renderer = new DiffRenderer(new AstConfiguration());
+        String diff = renderer.render(OLD, removed);
+        assertEquals(2, renderer.getSharedMembers());
+        assertEquals(1, renderer.getChangedMembers());
+        assertEquals(2, count(diff, "diff-del"));
+        assertEquals(0, count(diff, "diff-add"));
+    }
+
+    @Test
+    public void marksOnlyTheChangedLinesOfAChangedMember() {
+        String changed = OLD.replace("int height = 2;", "int height = 3;");
+        DiffRenderer renderer = new DiffRenderer(new AstConfiguration());
+        String diff = renderer.render(OLD, changed);
+        assertEquals(2, renderer.getSharedMembers());
+        assertEquals(1, renderer.getChangedMembers());
+        assertEquals(1, count(diff, "diff-change"));
+        assertEquals(1, count(diff, "diff-del"));
+        assertEquals(1, count(diff, "diff-add"));
+    }
+
+    @Test
+    public void alignsLongMembersLineByLine() {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            body.append("        total += ").append(i).append(";\n");
+        }
+        String old = "public class Sum {\n    int sum() {\n        int total = 0;\n" + body + "        return total;\n    }\n}\n";
+        String fresh = old.replace("total += 100;\n", "total -= 100;\n        total += 1000;\n")
+                .replace("        total += 400;\n", "");
+        DiffRenderer renderer = new DiffRenderer(new AstConfiguration());
+        String diff = renderer.render(old, fresh);
+        assertEquals(1, renderer.getChangedMembers());
+        assertEquals(2, count(diff, "diff-del"));
+        assertEquals(2, count(diff, "diff-add"));
+    }
+}
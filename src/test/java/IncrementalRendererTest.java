@@ -0,0 +1,95 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IncrementalRendererTest {
+    private static final String SOURCE = "package b;\n"
+            + "\n"
+            + "import a.Shape;\n"
+            + "import java.util.List;\n"
+            + "\n"
+            + "public class Canvas {\n"
+            + "    private Shape first;\n"
+            + "\n"
+            + "    /** Draws everything. */\n"
+            + "    public void draw(List<Shape> shapes) {\n"
+            + "        int count = 0;\n"
+            + "    }\n"
+            + "\n"
+            + "    public int size() {\n"
+            + "        return 0;\n"
+            + "    }\n"
+            + "}\n";
+
+    private Path root;
+    private TypeIndex types;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("incremental");
+        Path shape = root.resolve("src/a/Shape.java");
+        Files.createDirectories(shape.getParent());
+        Files.write(shape, "package a;\npublic class Shape {\n}\n".getBytes(StandardCharsets.UTF_8));
+        types = TypeIndex.build(root.resolve("src"), root.resolve("types.idx"), 1);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(root)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    private static void assertUpdateMatchesFullRender(AstConfiguration configuration, String edited) {
+        IncrementalRenderer renderer = new IncrementalRenderer(configuration);
+        renderer.render(SOURCE);
+        String updated = renderer.update(edited).toString();
+        assertTrue(renderer.isIncremental());
+        assertEquals(new IncrementalRenderer(configuration).render(edited).toString(), updated);
+    }
+
+    @Test
+    public void splicesAnEditedMethodBody() {
+        assertUpdateMatchesFullRender(new AstConfiguration(),
+                SOURCE.replace("int count = 0;", "int count = shapes.size();"));
+    }
+
+    @Test
+    public void splicesAnEditedMemberWithItsComment() {
+        assertUpdateMatchesFullRender(new AstConfiguration(),
+                SOURCE.replace("Draws everything.", "Draws every shape."));
+    }
+
+    @Test
+    public void linksImportedTypesInTheSplicedMember() {
+        AstConfiguration configuration = new AstConfiguration().setTypeIndex(types).setSymbolIndex(true);
+        String edited = SOURCE.replace("int count = 0;", "Shape last = new Shape();");
+        assertUpdateMatchesFullRender(configuration, edited);
+
+        IncrementalRenderer renderer = new IncrementalRenderer(configuration);
+        renderer.render(SOURCE);
+        String updated = renderer.update(edited).toString();
+        assertEquals(5, updated.split("href='a/Shape.java.html#L2'", -1).length - 1);
+    }
+
+    @Test
+    public void rendersEverythingForAnEditOutsideMembers() {
+        IncrementalRenderer renderer = new IncrementalRenderer(new AstConfiguration());
+        renderer.render(SOURCE);
+        String edited = SOURCE.replace("import java.util.List;\n", "import java.util.List;\nimport java.util.Map;\n");
+        assertEquals(new IncrementalRenderer(new AstConfiguration()).render(edited).toString(),
+                renderer.update(edited).toString());
+        assertFalse(renderer.isIncremental());
+    }
+}
@@ -0,0 +1,57 @@
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class InstrumentedAstVisitorTest {
+    private static final String SOURCE = "class Shape {\n"
+            + "    Shape() {\n"
+            + "    }\n"
+            + "    @Override\n"
+            + "    public String toString() {\n"
+            + "        return new StringBuilder().append(1).toString();\n"
+            + "    }\n"
+            + "}\n";
+
+    private static RenderStats render(boolean symbolIndex) {
+        RenderStats stats = new RenderStats();
+        AstConfiguration configuration = new AstConfiguration().setSymbolIndex(symbolIndex).setRenderStats(stats);
+        AstVisitor visitor = AstVisitor.create(configuration, null);
+        CompilationUnit cu = JavaParser.parse(SOURCE);
+        cu.accept(visitor, null);
+        return stats;
+    }
+
+    private static void assertProcessorProbes(RenderStats stats) {
+        assertEquals(1, stats.getCount(RenderStats.Probe.printClassDeclaration));
+        assertEquals(1, stats.getCount(RenderStats.Probe.printConstructor));
+        assertEquals(1, stats.getCount(RenderStats.Probe.printMethodDeclaration));
+        assertEquals(1, stats.getCount(RenderStats.Probe.printAnnotation));
+        assertEquals(1, stats.getCount(RenderStats.Probe.printNewObjectCreation));
+        assertEquals(2, stats.getCount(RenderStats.Probe.printMethodCall));
+        assertTrue(stats.getCount(RenderStats.Probe.printClassType) > 0);
+    }
+
+    @Test
+    public void recordsProcessorCalls() {
+        assertProcessorProbes(render(false));
+    }
+
+    @Test
+    public void recordsProcessorCallsWithSymbolIndex() {
+        assertProcessorProbes(render(true));
+    }
+
+    @Test
+    public void instrumentationDoesNotChangeTheMarkup() {
+        AstConfiguration configuration = new AstConfiguration().setSymbolIndex(true);
+        AstVisitor plain = new AstVisitor(configuration);
+        JavaParser.parse(SOURCE).accept(plain, null);
+        AstVisitor instrumented = AstVisitor.create(configuration.setRenderStats(new RenderStats()), null);
+        JavaParser.parse(SOURCE).accept(instrumented, null);
+        assertEquals(plain.getSource(), instrumented.getSource());
+        assertEquals(plain.getSymbolIndex().size(), instrumented.getSymbolIndex().size());
+    }
+}
@@ -0,0 +1,77 @@
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseProblemException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class LexicalHighlighterTest {
+    private static final String BROKEN = "public class Broken extends Base {\n"
+            + "    // return new Thing();\n"
+            + "    void run( {\n"
+            + "        String s = \"class X\";\n"
+            + "        helper(new Item());\n";
+
+    private static String text(String html) {
+        return html.replaceAll("<[^>]*>", "");
+    }
+
+    @Test
+    public void fallsBackOnUnparseableInput() {
+        AstConfiguration configuration = new AstConfiguration().setLexerFallback(true);
+        assertNull(LexicalHighlighter.parse(BROKEN, () -> JavaParser.parse(BROKEN), configuration));
+    }
+
+    @Test(expected = ParseProblemException.class)
+    public void failsOnUnparseableInputWithoutFallback() {
+        LexicalHighlighter.parse(BROKEN, () -> JavaParser.parse(BROKEN), new AstConfiguration());
+    }
+
+    @Test
+    public void parsesInputUpToTheThreshold() {
+        String source = "class A {}\n";
+        AstConfiguration configuration = new AstConfiguration().setLexerThreshold(source.length());
+        assertNotNull(LexicalHighlighter.parse(source, () -> JavaParser.parse(source), configuration));
+    }
+
+    @Test
+    public void skipsParsingPastTheThreshold() {
+        String source = "class A {}\n";
+        AstConfiguration configuration = new AstConfiguration().setLexerThreshold(source.length() - 1);
+        assertNull(LexicalHighlighter.parse(source, () -> {
+            throw new AssertionError("parsed a source past the threshold");
+        }, configuration));
+    }
+
+    @Test
+    public void highlightsUnparseableInput() {
+        String html = new LexicalHighlighter(new AstConfiguration()).highlight(BROKEN);
+        assertEquals("<span class='keyword' >public</span> <span class='keyword' >class</span> "
+                + "<span type='class_declare' >Broken</span> <span class='keyword' >extends</span> "
+                + "<span type='class' >Base</span> {\n"
+                + "    // return new Thing();\n"
+                + "    <span class='keyword' >void</span> <span type='method_declare' >run</span>( {\n"
+                + "        <span type='class' >String</span> s = \"class X\";\n"
+                + "        <span type='method_call' >helper</span>(<span class='keyword' >new</span> "
+                + "<span type='new' >Item</span>());\n", html);
+    }
+
+    @Test
+    public void keepsTheSourceOfInputPastTheThreshold() {
+        StringBuilder source = new StringBuilder("public class Large {\n");
+        for (int i = 0; i < 2000; i++) {
+            source.append("    private int field").append(i).append(" = ").append(i).append(";\n");
+        }
+        source.append("}\n");
+        AstConfiguration configuration = new AstConfiguration().setLexerThreshold(1024);
+        String large = source.toString();
+        assertNull(LexicalHighlighter.parse(large, () -> JavaParser.parse(large), configuration));
+
+        LexicalHighlighter highlighter = new LexicalHighlighter(configuration);
+        String html = highlighter.highlight(large);
+        assertEquals(large, text(html));
+        assertEquals(2001, html.split("<span class='keyword' >private</span>", -1).length);
+        assertEquals(html, highlighter.highlight(large));
+    }
+}
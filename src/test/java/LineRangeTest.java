@@ -0,0 +1,102 @@
+import com.github.javaparser.JavaParser;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class LineRangeTest {
+    private static final String SOURCE = "package demo;\n"
+            + "\n"
+            + "import java.util.List;\n"
+            + "\n"
+            + "public class Lines {\n"
+            + "    private int before;\n"
+            + "\n"
+            + "    int first() {\n"
+            + "        int a = 1;\n"
+            + "        int b = 2;\n"
+            + "        return a + b;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Middle. */\n"
+            + "    int middle() {\n"
+            + "        return 0;\n"
+            + "    }\n"
+            + "\n"
+            + "    int last() {\n"
+            + "        int c = 3;\n"
+            + "        if (c > 0) {\n"
+            + "            c--;\n"
+            + "        }\n"
+            + "        return c;\n"
+            + "    }\n"
+            + "\n"
+            + "    private int after;\n"
+            + "}\n";
+
+    private static String render(int firstLine, int lastLine) {
+        AstVisitor visitor = AstVisitor.create(new AstConfiguration(), null);
+        visitor.setLineRange(firstLine, lastLine);
+        JavaParser.parse(SOURCE).accept(visitor, null);
+        String html = visitor.getSource();
+        assertEquals(html.split("<span", -1).length, html.split("</span>", -1).length);
+        return html.replaceAll("<[^>]*>", "");
+    }
+
+    @Test
+    public void keepsTheStatementsOfMembersCutByTheRange() {
+        assertEquals("public class Lines {\n"
+                + "\n"
+                + "    int first() {\n"
+                + "        int b = 2;\n"
+                + "        return a + b;\n"
+                + "    }\n"
+                + "\n"
+                + "    /** Middle. */\n"
+                + "    int middle() {\n"
+                + "        return 0;\n"
+                + "    }\n"
+                + "\n"
+                + "    int last() {\n"
+                + "        int c = 3;\n"
+                + "        if (c > 0) {\n"
+                + "            c--;\n"
+                + "        }\n"
+                + "    }\n"
+                + "}\n", render(10, 22));
+    }
+
+    @Test
+    public void keepsTheBlocksAroundARangeInsideAMember() {
+        assertEquals("public class Lines {\n"
+                + "\n"
+                + "    int last() {\n"
+                + "        if (c > 0) {\n"
+                + "            c--;\n"
+                + "        }\n"
+                + "        return c;\n"
+                + "    }\n"
+                + "}\n", render(22, 24));
+    }
+
+    @Test
+    public void keepsAMemberWhoseCommentIsInTheRange() {
+        assertEquals("public class Lines {\n"
+                + "\n"
+                + "    /** Middle. */\n"
+                + "    int middle() {\n"
+                + "    }\n"
+                + "}\n", render(14, 14));
+    }
+
+    @Test
+    public void rendersEverythingForTheWholeFile() {
+        AstVisitor visitor = AstVisitor.create(new AstConfiguration(), null);
+        JavaParser.parse(SOURCE).accept(visitor, null);
+        assertEquals(visitor.getSource().replaceAll("<[^>]*>", ""), render(1, Integer.MAX_VALUE));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsAnInvertedRange() {
+        AstVisitor.create(new AstConfiguration(), null).setLineRange(5, 4);
+    }
+}
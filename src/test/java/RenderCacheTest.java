@@ -0,0 +1,110 @@
+import com.github.javaparser.JavaParser;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import theme.Theme;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class RenderCacheTest {
+    private static final byte[] SOURCE = "class Shape {\n    int sides = 3;\n}\n".getBytes(StandardCharsets.UTF_8);
+
+    private Path root;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("cache");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(root)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    private static String text(ByteBuffer html) {
+        byte[] bytes = new byte[html.remaining()];
+        html.duplicate().get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String render(AstConfiguration configuration) {
+        AstVisitor visitor = AstVisitor.create(configuration, null);
+        JavaParser.parse(new String(SOURCE, StandardCharsets.UTF_8)).accept(visitor, null);
+        return visitor.getSource();
+    }
+
+    @Test
+    public void servesARepeatedSourceFromMemory() {
+        RenderCache cache = new RenderCache(new AstConfiguration(), 1 << 20);
+        String first = text(cache.render(SOURCE));
+        String second = text(cache.render(SOURCE));
+        assertEquals(render(new AstConfiguration()), first);
+        assertEquals(first, second);
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getMemoryHits());
+    }
+
+    @Test
+    public void servesAnotherCacheFromDisk() {
+        new RenderCache(new AstConfiguration(), 1 << 20, root).render(SOURCE);
+        RenderCache cache = new RenderCache(new AstConfiguration(), 1 << 20, root);
+        assertEquals(render(new AstConfiguration()), text(cache.render(SOURCE)));
+        assertEquals(1, cache.getDiskHits());
+        assertEquals(0, cache.getMisses());
+    }
+
+    @Test
+    public void keysEachThemeSeparately() throws IOException {
+        AstConfiguration configuration = new AstConfiguration();
+        RenderCache cache = new RenderCache(configuration, 1 << 20);
+        String plain = text(cache.render(SOURCE));
+
+        try (InputStream in = getClass().getResourceAsStream("/themes/darcula.properties")) {
+            configuration.setTheme(Theme.load("darcula", in));
+        }
+        String themed = text(cache.render(SOURCE));
+        assertNotEquals(plain, themed);
+        assertEquals(render(configuration), themed);
+        assertEquals(2, cache.getMisses());
+
+        configuration.setTheme(null);
+        assertEquals(plain, text(cache.render(SOURCE)));
+        assertEquals(1, cache.getMemoryHits());
+    }
+
+    @Test
+    public void batchRendersMatchUncachedOnes() throws IOException {
+        Path sources = root.resolve("src");
+        Files.createDirectories(sources);
+        Files.write(sources.resolve("Shape.java"), SOURCE);
+
+        try (BatchRenderer plain = new BatchRenderer(new AstConfiguration(), 1)) {
+            plain.render(sources, root.resolve("plain"));
+        }
+        RenderCache cache = new RenderCache(new AstConfiguration(), 1 << 20);
+        BatchRenderer.Result result;
+        try (BatchRenderer cached = new BatchRenderer(new AstConfiguration(), 1).setCache(cache)) {
+            cached.render(sources, root.resolve("first"));
+            result = cached.render(sources, root.resolve("second"));
+        }
+
+        byte[] expected = Files.readAllBytes(root.resolve("plain/Shape.java.html"));
+        assertEquals(new String(expected, StandardCharsets.UTF_8),
+                new String(Files.readAllBytes(root.resolve("second/Shape.java.html")), StandardCharsets.UTF_8));
+        assertEquals(1, result.getFiles());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getMemoryHits());
+    }
+}
@@ -0,0 +1,75 @@
+import com.github.javaparser.JavaParser;
+import org.junit.Test;
+import theme.KeywordEnum;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TokenStreamTest {
+    private static final String SOURCE = "public class Counter {\n"
+            + "    private static final long LIMIT = 1L << 40;\n"
+            + "\n"
+            + "    public synchronized long next(long value) {\n"
+            + "        return value < LIMIT ? value + 1 : 0;\n"
+            + "    }\n"
+            + "}\n";
+
+    private static TokenStream roundTrip(TokenStream tokens) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        tokens.writeTo(bytes);
+        return TokenStream.readFrom(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+
+    @Test
+    public void roundTripsRenderedTokens() throws IOException {
+        StringBuilder plain = new StringBuilder();
+        TokenStream tokens = TokenStreamProcessor.render(JavaParser.parse(SOURCE), new AstConfiguration(), plain);
+        assertTrue(tokens.size() > 0);
+
+        TokenStream read = roundTrip(tokens);
+        assertEquals(tokens.size(), read.size());
+        assertArrayEquals(tokens.toArray(), read.toArray());
+        for (int i = 0; i < read.size(); i++) {
+            if (read.getType(i) >= TokenStream.KEYWORD_BASE) {
+                KeywordEnum keyword = KeywordEnum.values()[read.getType(i) - TokenStream.KEYWORD_BASE];
+                String text = plain.substring(read.getOffset(i), read.getOffset(i) + read.getLength(i));
+                assertEquals(keyword.getCodeRepresentation(), text);
+            }
+        }
+    }
+
+    @Test
+    public void roundTripsLargeValues() throws IOException {
+        TokenStream tokens = new TokenStream(1);
+        tokens.add(0, 0, 0);
+        tokens.add(127, 128, 1);
+        tokens.add(16384, 1 << 21, TokenStream.KEYWORD_BASE);
+        tokens.add(Integer.MAX_VALUE, Integer.MAX_VALUE, TokenStream.typeOf(KeywordEnum.values()[0]));
+        assertArrayEquals(tokens.toArray(), roundTrip(tokens).toArray());
+    }
+
+    @Test
+    public void roundTripsAnEmptyStream() throws IOException {
+        assertEquals(0, roundTrip(new TokenStream()).size());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherInput() throws IOException {
+        TokenStream.readFrom(new ByteArrayInputStream("<html>".getBytes("UTF-8")));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTruncatedInput() throws IOException {
+        TokenStream tokens = new TokenStream();
+        tokens.add(300, 4, 1);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        tokens.writeTo(bytes);
+        byte[] all = bytes.toByteArray();
+        TokenStream.readFrom(new ByteArrayInputStream(all, 0, all.length - 1));
+    }
+}
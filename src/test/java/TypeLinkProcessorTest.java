@@ -0,0 +1,105 @@
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TypeLinkProcessorTest {
+    private static final String USE = "package b;\n"
+            + "import a.Shape;\n"
+            + "class Use {\n"
+            + "    Shape shape = new Shape();\n"
+            + "}\n";
+    private static final String LINK = "href='a/Shape.java.html#L2'";
+
+    private Path root;
+    private TypeIndex types;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("typelinks");
+        Path shape = root.resolve("src/a/Shape.java");
+        Files.createDirectories(shape.getParent());
+        Files.write(shape, "package a;\npublic class Shape {\n}\n".getBytes(StandardCharsets.UTF_8));
+        types = TypeIndex.build(root.resolve("src"), root.resolve("types.idx"), 1);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(root)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    private String render(boolean symbolIndex) {
+        AstConfiguration configuration = new AstConfiguration().setTypeIndex(types).setSymbolIndex(symbolIndex);
+        AstVisitor visitor = AstVisitor.create(configuration, null);
+        CompilationUnit cu = JavaParser.parse(USE);
+        cu.accept(visitor, null);
+        return visitor.getSource();
+    }
+
+    private static int count(String text, String part) {
+        int count = 0;
+        for (int i = text.indexOf(part); i >= 0; i = text.indexOf(part, i + part.length())) {
+            count++;
+        }
+        return count;
+    }
+
+    @Test
+    public void linksImportFieldTypeAndConstructedType() {
+        assertEquals(3, count(render(false), LINK));
+    }
+
+    @Test
+    public void linksWhenSymbolIndexWrapsTheLinks() {
+        String html = render(true);
+        assertEquals(3, count(html, LINK));
+        assertTrue(html.contains("</a>"));
+    }
+
+    @Test
+    public void symbolIndexDoesNotChangeTheMarkup() {
+        assertEquals(render(false), render(true));
+    }
+
+    @Test
+    public void escapesTheLinkBase() {
+        AstConfiguration configuration = new AstConfiguration().setTypeIndex(types).setLinkBase("x'&<y/");
+        AstVisitor visitor = AstVisitor.create(configuration, null);
+        JavaParser.parse(USE).accept(visitor, null);
+        assertEquals(3, count(visitor.getSource(), "href='x&#39;&amp;&lt;y/a/Shape.java.html#L2'"));
+    }
+
+    @Test
+    public void readsTheImportsOfEachUnit() {
+        AstVisitor visitor = AstVisitor.create(new AstConfiguration().setTypeIndex(types), null);
+        JavaParser.parse("package b;\nclass Other {\n    Shape shape;\n}\n").accept(visitor, null);
+        assertEquals(0, count(visitor.getSource(), LINK));
+        visitor.reset();
+        JavaParser.parse(USE).accept(visitor, null);
+        assertEquals(3, count(visitor.getSource(), LINK));
+        visitor.reset();
+        JavaParser.parse("package a;\nclass Same {\n    Shape shape;\n}\n").accept(visitor, null);
+        assertEquals(1, count(visitor.getSource(), LINK));
+    }
+
+    @Test
+    public void fanOutHtmlMatchesTheSingleOutput() {
+        AstConfiguration configuration = new AstConfiguration().setTypeIndex(types).setSymbolIndex(true);
+        FanOutRenderer renderer = new FanOutRenderer(configuration).addHtml(null).addTokens(null);
+        renderer.render(JavaParser.parse(USE));
+        assertEquals(render(true), renderer.getSource(0));
+    }
+}